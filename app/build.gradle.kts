@@ -3,6 +3,9 @@ plugins {
     id("com.google.gms.google-services")
 }
 
+val useFirebaseEmulator = (findProperty("life.useFirebaseEmulator") as String?).toBoolean()
+val allowDebugBenchmarks = (findProperty("life.allowDebugBenchmarks") as String?).toBoolean()
+
 android {
     namespace = "com.example.life"
     compileSdk = 35
@@ -15,6 +18,14 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        buildConfigField("boolean", "USE_FIREBASE_EMULATOR", useFirebaseEmulator.toString())
+        // Адрес компьютера разработчика из эмулятора Android
+        buildConfigField("String", "FIREBASE_EMULATOR_HOST", "\"10.0.2.2\"")
+        // Микробенчмарки в androidTest запускаются в debug-сборке приложения; замеры в ней
+        // неточны, поэтому ошибки конфигурации подавляются только по явному -Plife.allowDebugBenchmarks=true
+        if (allowDebugBenchmarks) {
+            testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "DEBUGGABLE,EMULATOR"
+        }
     }
 
     buildTypes {
@@ -32,6 +43,7 @@ android {
     }
     buildFeatures {
         viewBinding = true
+        buildConfig = true
     }
 }
 
@@ -41,6 +53,9 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     implementation(libs.filament.android)
+    implementation(libs.lifecycle.viewmodel)
+    implementation(libs.lifecycle.livedata)
+    implementation(libs.asynclayoutinflater)
     
     // Firebase
     implementation(platform("com.google.firebase:firebase-bom:32.7.2"))
@@ -50,4 +65,5 @@ dependencies {
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(libs.benchmark.junit4)
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.example.life.chat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.life.BuildConfig;
+import com.example.life.chat.model.ChatMapper;
+import com.example.life.chat.model.Message;
+import com.example.life.chat.model.MessageMapper;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Проверка правил database.rules.json на локальном эмуляторе Firebase.
+ * Запуск: firebase emulators:start, затем
+ * ./gradlew :app:connectedAndroidTest -Plife.useFirebaseEmulator=true
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseRulesTest {
+
+    private static final String PASSWORD = "password123";
+
+    private final FirebaseAuth auth = FirebaseAuth.getInstance();
+    private final DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+    private final Map<String, String> emailsByUid = new HashMap<>();
+
+    @Before
+    public void requireEmulator() {
+        assumeTrue("Нужна сборка с life.useFirebaseEmulator=true", BuildConfig.USE_FIREBASE_EMULATOR);
+    }
+
+    @Test
+    public void participantsWriteAndQueryMessages_strangersAreRejected() throws Exception {
+        String alice = registerUser();
+        String bob = registerUser();
+        String mallory = registerUser();
+
+        signIn(alice);
+        Map<String, Object> createChat = new HashMap<>();
+        String chatId = ChatMapper.putChatOpen(createChat, alice, bob);
+        await(root.updateChildren(createChat));
+
+        DatabaseReference messagesRef = root.child("messages").child(chatId);
+        for (int i = 0; i < 3; i++) {
+            String messageId = messagesRef.push().getKey();
+            await(messagesRef.child(messageId).setValue(
+                    MessageMapper.toMap(new Message(messageId, "text " + i, alice, 1000 + i))));
+        }
+
+        // Диапазонный запрос по индексу timestamp выполняется на сервере
+        DataSnapshot recent = await(messagesRef.orderByChild(MessageMapper.FIELD_TIMESTAMP).startAt(1001).get());
+        assertEquals(2, recent.getChildrenCount());
+
+        signIn(mallory);
+        String messageId = messagesRef.push().getKey();
+        assertDenied(messagesRef.child(messageId).setValue(
+                MessageMapper.toMap(new Message(messageId, "spam", mallory, 2000))));
+        assertDenied(messagesRef.get());
+        assertDenied(root.child("user_chats").child(alice).get());
+
+        signIn(bob);
+        // Нельзя отправить сообщение от имени другого участника
+        assertDenied(messagesRef.child(messageId).setValue(
+                MessageMapper.toMap(new Message(messageId, "fake", alice, 2000))));
+        assertEquals(3, await(messagesRef.get()).getChildrenCount());
+    }
+
+    @Test
+    public void openChat_isIdempotentFromBothSides_unknownUserIsRejected() throws Exception {
+        String alice = registerUser();
+        String bob = registerUser();
+
+        signIn(alice);
+        Map<String, Object> aliceOpen = new HashMap<>();
+        String chatId = ChatMapper.putChatOpen(aliceOpen, alice, bob);
+        await(root.updateChildren(aliceOpen));
+        await(root.updateChildren(aliceOpen));
+
+        signIn(bob);
+        Map<String, Object> bobOpen = new HashMap<>();
+        assertEquals(chatId, ChatMapper.putChatOpen(bobOpen, bob, alice));
+        await(root.updateChildren(bobOpen));
+        assertEquals(2, await(root.child("chats").child(chatId).child(ChatMapper.FIELD_PARTICIPANTS).get()).getChildrenCount());
+
+        Map<String, Object> ghostOpen = new HashMap<>();
+        ChatMapper.putChatOpen(ghostOpen, bob, UUID.randomUUID().toString());
+        assertDenied(root.updateChildren(ghostOpen));
+    }
+
+    @Test
+    public void participants_strangerCannotCreateChatOfOthersFirst() throws Exception {
+        String alice = registerUser();
+        String bob = registerUser();
+        String mallory = registerUser();
+        String chatId = ChatMapper.chatIdFor(alice, bob);
+
+        // ID чата вычисляется из пары участников, поэтому посторонний знает его заранее
+        signIn(mallory);
+        Map<String, Object> participants = new HashMap<>();
+        participants.put(mallory, true);
+        participants.put(alice, true);
+        participants.put(bob, true);
+        assertDenied(root.child("chats").child(chatId).child(ChatMapper.FIELD_PARTICIPANTS).setValue(participants));
+        Map<String, Object> onlyMallory = new HashMap<>();
+        onlyMallory.put(mallory, true);
+        assertDenied(root.child("chats").child(chatId).child(ChatMapper.FIELD_PARTICIPANTS).setValue(onlyMallory));
+
+        signIn(alice);
+        Map<String, Object> aliceOpen = new HashMap<>();
+        ChatMapper.putChatOpen(aliceOpen, alice, bob);
+        await(root.updateChildren(aliceOpen));
+        assertEquals(2, await(root.child("chats").child(chatId).child(ChatMapper.FIELD_PARTICIPANTS).get()).getChildrenCount());
+
+        signIn(mallory);
+        assertDenied(root.child("messages").child(chatId).get());
+    }
+
+    @Test
+    public void readMarkerTransaction_keepsPeerReadTimestamp() throws Exception {
+        String alice = registerUser();
+        String bob = registerUser();
+
+        signIn(alice);
+        Map<String, Object> updates = new HashMap<>();
+        String chatId = ChatMapper.putChatOpen(updates, alice, bob);
+        Message message = new Message("m1", "привет", bob, 1000);
+        ChatMapper.putLastMessage(updates, "user_chats/" + alice + "/" + bob + "/", chatId, message);
+        await(root.updateChildren(updates));
+
+        // Собеседник прочитал чат: его отметка лежит в сводке Алисы
+        signIn(bob);
+        Map<String, Object> bobRead = new HashMap<>();
+        ChatMapper.putPeerReadMarker(bobRead, bob, alice, 500);
+        await(root.updateChildren(bobRead));
+
+        // Транзакция переписывает всю сводку, включая неизменённую отметку собеседника
+        signIn(alice);
+        DatabaseReference summary = root.child("user_chats").child(alice).child(bob);
+        await(runTransaction(summary, data -> ChatMapper.applyReadMarker(data, alice, 1000)));
+        assertEquals(500L, await(summary.child(ChatMapper.FIELD_PEER_LAST_READ_TIMESTAMP).get()).getValue());
+        assertEquals(1000L, await(summary.child(ChatMapper.FIELD_LAST_READ_TIMESTAMP).get()).getValue());
+
+        // Изменить отметку собеседника по-прежнему нельзя
+        assertDenied(summary.child(ChatMapper.FIELD_PEER_LAST_READ_TIMESTAMP).setValue(2000));
+    }
+
+    private String registerUser() throws Exception {
+        String email = UUID.randomUUID() + "@example.com";
+        String uid = await(auth.createUserWithEmailAndPassword(email, PASSWORD)).getUser().getUid();
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("email", email);
+        userData.put("uid", uid);
+        await(root.child("users").child(uid).setValue(userData));
+        auth.signOut();
+        emailsByUid.put(uid, email);
+        return uid;
+    }
+
+    private void signIn(String uid) throws Exception {
+        auth.signOut();
+        await(auth.signInWithEmailAndPassword(emailsByUid.get(uid), PASSWORD));
+    }
+
+    private static Task<DataSnapshot> runTransaction(DatabaseReference ref, UnaryOperator<Object> update) {
+        TaskCompletionSource<DataSnapshot> result = new TaskCompletionSource<>();
+        ref.runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                currentData.setValue(update.apply(currentData.getValue()));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot currentData) {
+                if (error != null) {
+                    result.setException(error.toException());
+                } else {
+                    result.setResult(currentData);
+                }
+            }
+        });
+        return result.getTask();
+    }
+
+    private static <T> T await(Task<T> task) throws Exception {
+        return Tasks.await(task, 10, TimeUnit.SECONDS);
+    }
+
+    private static void assertDenied(Task<?> task) throws Exception {
+        try {
+            await(task);
+            fail("Операция должна быть запрещена правилами");
+        } catch (ExecutionException expected) {
+            // Permission denied
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.life.chat;
+
+import android.view.Choreographer;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.life.chat.data.MessageIngestBuffer;
+import com.example.life.chat.model.CompactMessageList;
+import com.example.life.chat.model.CompactMessageStore;
+import com.example.life.chat.model.Message;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Микробенчмарки пути сообщений на устройстве: обновление адаптера и приём
+ * входящих сообщений пачками.
+ * Запуск: ./gradlew :app:connectedAndroidTest -Plife.allowDebugBenchmarks=true
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.life.chat.MessageListBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class MessageListBenchmark {
+
+    private static final int HISTORY_SIZE = 2000;
+    private static final int BATCH_SIZE = 200;
+    /** Сколько добавлений в конец измеряется на одном адаптере до его пересоздания. */
+    private static final int APPENDS_PER_ADAPTER = 1000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    /**
+     * Новое сообщение в конце уже загруженной истории (быстрый путь setMessages).
+     * Снимки с последовательно добавленными сообщениями готовятся заранее; адаптер
+     * пересоздаётся с остановкой замера только раз на {@link #APPENDS_PER_ADAPTER} итераций.
+     */
+    @Test
+    public void setMessages_append() {
+        CompactMessageStore store = new CompactMessageStore();
+        store.addAll(createMessages(0, HISTORY_SIZE));
+        CompactMessageList history = store.snapshot();
+        List<CompactMessageList> appends = new ArrayList<>(APPENDS_PER_ADAPTER);
+        for (int i = 0; i < APPENDS_PER_ADAPTER; i++) {
+            store.add(createMessage(HISTORY_SIZE + i));
+            appends.add(store.snapshot());
+        }
+
+        runOnMainSync(() -> {
+            BenchmarkState state = benchmarkRule.getState();
+            MessageAdapter adapter = null;
+            int next = APPENDS_PER_ADAPTER;
+            while (state.keepRunning()) {
+                if (next == APPENDS_PER_ADAPTER) {
+                    state.pauseTiming();
+                    adapter = new MessageAdapter("user_a");
+                    adapter.setMessages(history);
+                    next = 0;
+                    state.resumeTiming();
+                }
+                adapter.setMessages(appends.get(next++));
+            }
+        });
+    }
+
+    /**
+     * Сравнение истории, в которой изменилось одно сообщение (фоновый путь setMessages).
+     */
+    @Test
+    public void diff_singleChange() {
+        CompactMessageStore store = new CompactMessageStore();
+        store.addAll(createMessages(0, HISTORY_SIZE));
+        CompactMessageList oldMessages = store.snapshot();
+        Message confirmed = createMessage(HISTORY_SIZE / 2);
+        confirmed.setText("Изменённый текст");
+        store.set(HISTORY_SIZE / 2, confirmed);
+        CompactMessageList newMessages = store.snapshot();
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DiffUtil.calculateDiff(new MessageAdapter.MessageDiffCallback(oldMessages, newMessages));
+        }
+    }
+
+    /**
+     * Пропускная способность буфера входящих сообщений: пачка onChildAdded
+     * и её сброс в одном кадре.
+     */
+    @Test
+    public void ingestBuffer_batch() {
+        List<Message> batch = createMessages(0, BATCH_SIZE);
+        runOnMainSync(() -> {
+            int[] received = new int[1];
+            MessageIngestBuffer<Message> buffer = new MessageIngestBuffer<>(items -> received[0] += items.size());
+            BenchmarkState state = benchmarkRule.getState();
+            while (state.keepRunning()) {
+                for (Message message : batch) {
+                    buffer.add(message);
+                }
+                buffer.doFrame(0);
+                // Кадры здесь не приходят: снимаем колбэк, как это сделал бы Choreographer
+                Choreographer.getInstance().removeFrameCallback(buffer);
+            }
+        });
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    private static List<Message> createMessages(int from, int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            messages.add(createMessage(i));
+        }
+        return messages;
+    }
+
+    private static Message createMessage(int index) {
+        return new Message(String.format("-N%018d", index), "Сообщение номер " + index,
+                index % 2 == 0 ? "user_a" : "user_b", 1_700_000_000_000L + index);
+    }
+}
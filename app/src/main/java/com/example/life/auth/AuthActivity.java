@@ -7,11 +7,13 @@ import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 
+import com.example.life.chat.data.ChatListRepository;
 import com.example.life.core.MainActivity;
 import com.example.life.R;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthInvalidCredentialsException;
 import com.google.firebase.auth.FirebaseAuthInvalidUserException;
+import com.google.firebase.auth.FirebaseUser;
 
 public class AuthActivity extends BaseActivity {
 
@@ -22,12 +24,20 @@ public class AuthActivity extends BaseActivity {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Сессия сохраняется между запусками: если пользователь уже вошел,
+        // экран входа не показывается и сразу открывается список чатов
+        auth = FirebaseAuth.getInstance();
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser != null) {
+            openMainActivity(currentUser);
+            return;
+        }
+
         setContentView(R.layout.activity_auth);
         EdgeToEdge.enable(this);
         hideSystemUI();
 
-        auth = FirebaseAuth.getInstance();
-
         emailEditText = findViewById(R.id.auth_email);
         passwordEditText = findViewById(R.id.auth_password);
 
@@ -54,9 +64,7 @@ public class AuthActivity extends BaseActivity {
                     if (task.isSuccessful()) {
                         // Вход успешен, переходим на главную страницу (где будет фрагмент мессенджера)
                         Toast.makeText(AuthActivity.this, "Вход успешен!", Toast.LENGTH_SHORT).show();
-                        Intent intent = new Intent(AuthActivity.this, MainActivity.class); // Замените MainActivity.class на вашу основную Activity
-                        startActivity(intent);
-                        finish(); // Закрываем текущую активность, чтобы пользователь не мог вернуться по кнопке "Назад"
+                        openMainActivity(auth.getCurrentUser());
                     } else {
                         // Вход неуспешен, обрабатываем ошибки
                         String errorMessage = "Ошибка входа.";
@@ -69,4 +77,19 @@ public class AuthActivity extends BaseActivity {
                     }
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * Переходит к главному экрану. Параллельно с его созданием запрашивает
+     * сводку чатов, чтобы подключение к базе и загрузка списка начались раньше.
+     *
+     * @param user вошедший пользователь
+     */
+    private void openMainActivity(FirebaseUser user) {
+        if (user != null) {
+            ChatListRepository.prefetch(user.getUid());
+        }
+        Intent intent = new Intent(AuthActivity.this, MainActivity.class);
+        startActivity(intent);
+        finish(); // Закрываем текущую активность, чтобы пользователь не мог вернуться по кнопке "Назад"
+    }
+}
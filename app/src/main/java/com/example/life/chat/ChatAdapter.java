@@ -6,75 +6,143 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.life.R;
+import com.example.life.chat.data.ProfileCache;
 import com.example.life.chat.model.Chat;
 
 import java.util.List;
-
-public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder> {
-
-    private List<Chat> chatList;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Адаптер списка чатов. Вместо ID собеседника показывает его имя из {@link ProfileCache}
+ * и обновляет строки, когда профили загружаются.
+ */
+public class ChatAdapter extends ListAdapter<Chat, ChatAdapter.ChatViewHolder> implements ProfileCache.Listener {
+
+    /** Больше этого числа счётчик непрочитанных показывается как "99+". */
+    private static final int MAX_BADGE_COUNT = 99;
+
+    private final String currentUserId;
+    private final ProfileCache profileCache;
+    @Nullable
+    private final RowViewPool rowViewPool;
     private OnChatClickListener listener;
 
     public interface OnChatClickListener {
         void onChatClick(Chat chat);
     }
 
-    public ChatAdapter(List<Chat> chatList, OnChatClickListener listener) {
-        this.chatList = chatList;
+    private static final DiffUtil.ItemCallback<Chat> DIFF_CALLBACK = new DiffUtil.ItemCallback<Chat>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Chat oldItem, @NonNull Chat newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Chat oldItem, @NonNull Chat newItem) {
+            return Objects.equals(oldItem.getOtherUserId(), newItem.getOtherUserId())
+                    && Objects.equals(oldItem.getLastMessage(), newItem.getLastMessage())
+                    && oldItem.getLastMessageTimestamp() == newItem.getLastMessageTimestamp()
+                    && oldItem.getUnreadCount() == newItem.getUnreadCount()
+                    && Objects.equals(oldItem.getLastMessageSenderId(), newItem.getLastMessageSenderId())
+                    && oldItem.getPeerLastReadTimestamp() == newItem.getPeerLastReadTimestamp();
+        }
+    };
+
+    public ChatAdapter(String currentUserId, ProfileCache profileCache, @Nullable RowViewPool rowViewPool, OnChatClickListener listener) {
+        super(DIFF_CALLBACK);
+        this.currentUserId = currentUserId;
+        this.profileCache = profileCache;
+        this.rowViewPool = rowViewPool;
         this.listener = listener;
     }
 
     @NonNull
     @Override
     public ChatViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_chat, parent, false);
+        View view = rowViewPool != null ? rowViewPool.take(R.layout.item_chat) : null;
+        if (view == null) {
+            view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_chat, parent, false);
+        }
         return new ChatViewHolder(view);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ChatViewHolder holder, int position) {
-        Chat chat = chatList.get(position);
+        Chat chat = getItem(position);
         holder.bind(chat);
     }
 
-    @Override
-    public int getItemCount() {
-        return chatList.size();
+    /**
+     * Передает новый список чатов. Разница со старым списком вычисляется
+     * в фоновом потоке, элементы обновляются точечно.
+     *
+     * @param newChats неизменяемый список чатов
+     */
+    public void updateChats(List<Chat> newChats) {
+        submitList(newChats);
     }
 
-    public void updateChats(List<Chat> newChats) {
-        this.chatList = newChats;
-        notifyDataSetChanged();
+    /**
+     * Перепривязывает строки собеседников, чьи профили загрузились.
+     */
+    @Override
+    public void onProfilesUpdated(Set<String> uids) {
+        List<Chat> chats = getCurrentList();
+        for (int i = 0; i < chats.size(); i++) {
+            if (uids.contains(chats.get(i).getOtherUserId())) {
+                notifyItemChanged(i);
+            }
+        }
     }
 
     class ChatViewHolder extends RecyclerView.ViewHolder {
         TextView userIdText;
         TextView lastMessageText;
+        TextView unreadBadgeText;
 
         public ChatViewHolder(@NonNull View itemView) {
             super(itemView);
             userIdText = itemView.findViewById(R.id.user_id_text);
             lastMessageText = itemView.findViewById(R.id.last_message_text);
+            unreadBadgeText = itemView.findViewById(R.id.unread_badge_text);
 
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onChatClick(chatList.get(position));
+                    listener.onChatClick(getItem(position));
                 }
             });
         }
 
         public void bind(Chat chat) {
-            userIdText.setText(chat.getOtherUserId());
+            userIdText.setText(profileCache.getDisplayName(chat.getOtherUserId()));
             
             if (chat.getLastMessage() != null && !chat.getLastMessage().isEmpty()) {
-                lastMessageText.setText(chat.getLastMessage());
+                // Своё последнее сообщение отмечается галочками: ✓ отправлено, ✓✓ прочитано
+                if (currentUserId.equals(chat.getLastMessageSenderId())) {
+                    String receipt = chat.isLastMessageReadByPeer(currentUserId) ? "✓✓ " : "✓ ";
+                    lastMessageText.setText(receipt + chat.getLastMessage());
+                } else {
+                    lastMessageText.setText(chat.getLastMessage());
+                }
             } else {
                 lastMessageText.setText("Нет сообщений");
             }
+
+            int unreadCount = chat.getUnreadCount();
+            if (unreadCount > 0) {
+                unreadBadgeText.setText(unreadCount > MAX_BADGE_COUNT ? MAX_BADGE_COUNT + "+" : String.valueOf(unreadCount));
+                unreadBadgeText.setVisibility(View.VISIBLE);
+            } else {
+                unreadBadgeText.setVisibility(View.GONE);
+            }
         }
     }
-} 
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package com.example.life.chat;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,28 +13,32 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.life.chat.data.ChatListRepository;
+import com.example.life.chat.data.ProfileCache;
 import com.example.life.databinding.FragmentChatListBinding;
 import com.example.life.chat.model.Chat;
-import com.example.life.chat.model.Message;
+import com.example.life.chat.model.ChatMapper;
+import com.example.life.core.StartupTrace;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
  * Фрагмент для отображения списка чатов пользователя.
- * Позволяет просматривать существующие чаты, создавать новые и переходить к ним.
+ * Позволяет просматривать существующие чаты, создавать новые, переходить к ним
+ * и искать сообщения по локальной истории всех чатов.
  * Использует Firebase для хранения и синхронизации данных чатов.
+ * Список чатов и его подписка хранятся в {@link ChatListViewModel}.
  */
 public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClickListener {
 
@@ -65,8 +71,11 @@ public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClic
     private String currentUserId;
 
     private ChatAdapter chatAdapter;
-    private List<Chat> chatList;
-    private Map<String, ChildEventListener> messageListeners;
+    private MessageSearchAdapter searchAdapter;
+    private ProfileCache profileCache;
+    @Nullable
+    private RowViewPool rowViewPool;
+    private ChatListViewModel viewModel;
 
     /**
      * Привязывает фрагмент к контексту активности.
@@ -87,6 +96,9 @@ public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClic
         } else {
             Log.e(TAG, context.toString() + " must implement OnSettingsButtonClickListener");
         }
+        if (context instanceof RowViewPool.Provider) {
+            rowViewPool = ((RowViewPool.Provider) context).getRowViewPool();
+        }
     }
 
     /**
@@ -102,7 +114,7 @@ public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClic
 
     /**
      * Инициализирует компоненты интерфейса и настраивает обработчики событий.
-     * Подключается к Firebase и загружает список чатов пользователя.
+     * Подписывается на список чатов пользователя из ViewModel.
      */
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
@@ -119,14 +131,69 @@ public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClic
             return;
         }
 
-        chatList = new ArrayList<>();
-        messageListeners = new HashMap<>();
-        chatAdapter = new ChatAdapter(chatList, this);
+        profileCache = ProfileCache.getInstance(requireContext());
+        chatAdapter = new ChatAdapter(currentUserId, profileCache, rowViewPool, this);
+        profileCache.addListener(chatAdapter);
 
-        binding.chatsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        binding.chatsRecyclerView.setLayoutManager(layoutManager);
         binding.chatsRecyclerView.setAdapter(chatAdapter);
+        // Чат с новым сообщением переезжает в начало списка; если список открыт сверху,
+        // остаёмся сверху, иначе RecyclerView удержит прежний первый элемент
+        chatAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                scrollToTopIfAtTop(layoutManager, toPosition);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                scrollToTopIfAtTop(layoutManager, positionStart);
+            }
+        });
+
+        viewModel = new ViewModelProvider(this).get(ChatListViewModel.class);
+        viewModel.init(currentUserId);
+        viewModel.getChats().observe(getViewLifecycleOwner(), chats -> {
+            chatAdapter.updateChats(chats);
+            if (StartupTrace.getInstance().mark(StartupTrace.MARK_CHAT_LIST_SHOWN)) {
+                Log.i(TAG, "Запуск: " + StartupTrace.getInstance());
+            }
+        });
+        viewModel.getErrors().observe(getViewLifecycleOwner(), error -> {
+            if (error != null) {
+                Toast.makeText(getContext(), error, Toast.LENGTH_SHORT).show();
+                viewModel.onErrorShown();
+            }
+        });
+
+        searchAdapter = new MessageSearchAdapter(profileCache, result -> {
+            if (chatSelectedListener != null && result.getOtherUserId() != null) {
+                chatSelectedListener.onChatSelected(result.getChatId(), result.getOtherUserId());
+            }
+        });
+        binding.searchResultsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        binding.searchResultsRecyclerView.setAdapter(searchAdapter);
+        profileCache.addListener(searchAdapter);
+        binding.searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                viewModel.search(s.toString());
+            }
 
-        loadChats();
+            @Override
+            public void afterTextChanged(Editable s) {}
+        });
+        // null означает, что поиск не активен и показывается список чатов
+        viewModel.getSearchResults().observe(getViewLifecycleOwner(), results -> {
+            boolean searching = results != null;
+            binding.searchResultsRecyclerView.setVisibility(searching ? View.VISIBLE : View.GONE);
+            binding.chatsRecyclerView.setVisibility(searching ? View.GONE : View.VISIBLE);
+            searchAdapter.submitList(results);
+        });
 
         binding.settingsButton.setOnClickListener(v -> {
             if (settingsButtonClickListener != null) {
@@ -147,161 +214,73 @@ public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClic
                 return;
             }
 
-            databaseReference.child("users").child(otherUserId).addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot snapshot) {
-                    if (snapshot.exists()) {
-                        checkOrCreateChat(otherUserId);
-                    } else {
-                        Toast.makeText(getContext(), "Пользователь с таким ID не найден.", Toast.LENGTH_SHORT).show();
-                    }
-                }
+            // Чат с этим пользователем уже загружен: открываем его без запросов к сети
+            Chat existingChat = viewModel.findChatWith(otherUserId);
+            if (existingChat != null) {
+                onChatClick(existingChat);
+                return;
+            }
 
-                @Override
-                public void onCancelled(@NonNull DatabaseError error) {
-                    Toast.makeText(getContext(), "Ошибка при поиске пользователя: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
+            openChat(otherUserId);
         });
     }
 
-    /**
-     * Загружает список чатов пользователя из Firebase.
-     * Для каждого чата создает слушатель последнего сообщения.
-     */
-    private void loadChats() {
-        databaseReference.child("user_chats").child(currentUserId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                chatList.clear();
-                for (DataSnapshot chatSnapshot : snapshot.getChildren()) {
-                    String otherUserId = chatSnapshot.getKey();
-                    String chatId = chatSnapshot.getValue(String.class);
-                    if (otherUserId != null && chatId != null) {
-                        Chat chat = new Chat(chatId, otherUserId, "", 0);
-                        chatList.add(chat);
-                        listenForLastMessage(chatId, otherUserId);
-                    }
-                }
-                chatAdapter.updateChats(chatList);
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Toast.makeText(getContext(), "Ошибка загрузки чатов: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+    private void scrollToTopIfAtTop(LinearLayoutManager layoutManager, int changedPosition) {
+        if (binding != null && changedPosition == 0 && layoutManager.findFirstCompletelyVisibleItemPosition() <= 1) {
+            binding.chatsRecyclerView.scrollToPosition(0);
+        }
     }
 
     /**
-     * Создает слушатель для последнего сообщения в чате.
-     * Обновляет информацию о чате при получении нового сообщения.
-     * 
-     * @param chatId ID чата
+     * Открывает чат с пользователем за один запрос к серверу.
+     * ID чата вычисляется из пары участников, а участники и сводки обоих пользователей
+     * записываются одним многопутевым обновлением, которое для уже существующего чата
+     * ничего не меняет. Правила базы отклоняют его, если пользователя не существует
+     * или у пары уже есть чат со старым (случайным) ID — тогда читается сводка.
+     *
      * @param otherUserId ID собеседника
      */
-    private void listenForLastMessage(String chatId, String otherUserId) {
-        DatabaseReference messagesRef = databaseReference.child("messages").child(chatId);
-        ChildEventListener listener = messagesRef.limitToLast(1).addChildEventListener(new ChildEventListener() {
-            @Override
-            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                Message message = snapshot.getValue(Message.class);
-                if (message != null) {
-                    updateChatLastMessage(chatId, otherUserId, message.getText(), message.getTimestamp());
-                }
-            }
-
-            @Override
-            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
-
-            @Override
-            public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
-
-            @Override
-            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+    private void openChat(String otherUserId) {
+        Map<String, Object> updates = new HashMap<>();
+        String chatId = ChatMapper.putChatOpen(updates, currentUserId, otherUserId);
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "listenForLastMessage: onCancelled for chatId=" + chatId, error.toException());
-            }
-        });
-        messageListeners.put(chatId, listener);
+        databaseReference.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    if (chatSelectedListener != null) {
+                        chatSelectedListener.onChatSelected(chatId, otherUserId);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.w(TAG, "Не удалось открыть чат " + chatId + ", проверяем старую сводку", e);
+                    openLegacyChat(otherUserId);
+                });
     }
 
     /**
-     * Обновляет информацию о последнем сообщении в чате.
-     * 
-     * @param chatId ID чата
+     * Открывает чат, созданный до перехода на вычисляемые ID, по сводке user_chats.
+     * Если сводки нет, значит обновление отклонено из-за отсутствия пользователя.
+     *
      * @param otherUserId ID собеседника
-     * @param lastMessage текст последнего сообщения
-     * @param timestamp время последнего сообщения
-     */
-    private void updateChatLastMessage(String chatId, String otherUserId, String lastMessage, long timestamp) {
-        for (int i = 0; i < chatList.size(); i++) {
-            Chat chat = chatList.get(i);
-            if (chat.getId().equals(chatId)) {
-                chat.setLastMessage(lastMessage);
-                chat.setLastMessageTimestamp(timestamp);
-                chatAdapter.notifyItemChanged(i);
-                break;
-            }
-        }
-    }
-
-    /**
-     * Проверяет существование чата с пользователем и создает новый, если необходимо.
-     * 
-     * @param otherUserId ID пользователя для создания чата
      */
-    private void checkOrCreateChat(String otherUserId) {
+    private void openLegacyChat(String otherUserId) {
         databaseReference.child("user_chats").child(currentUserId).child(otherUserId).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    String chatId = snapshot.getValue(String.class);
-                    if (chatId != null && chatSelectedListener != null) {
-                        chatSelectedListener.onChatSelected(chatId, otherUserId);
-                    }
-                } else {
-                    createNewChat(otherUserId);
+                Chat summary = ChatListRepository.readChatSummary(snapshot);
+                if (summary == null) {
+                    Toast.makeText(getContext(), "Пользователь с таким ID не найден.", Toast.LENGTH_SHORT).show();
+                } else if (chatSelectedListener != null) {
+                    chatSelectedListener.onChatSelected(summary.getId(), otherUserId);
                 }
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
-                Toast.makeText(getContext(), "Ошибка при проверке чата: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                Toast.makeText(getContext(), "Ошибка при открытии чата: " + error.getMessage(), Toast.LENGTH_SHORT).show();
             }
         });
     }
 
-    /**
-     * Создает новый чат с пользователем.
-     * Создает записи в базе данных для обоих участников чата.
-     * 
-     * @param otherUserId ID пользователя для создания чата
-     */
-    private void createNewChat(String otherUserId) {
-        String chatId = databaseReference.child("chats").push().getKey();
-        if (chatId == null) {
-            Toast.makeText(getContext(), "Ошибка при создании чата", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("user_chats/" + currentUserId + "/" + otherUserId, chatId);
-        updates.put("user_chats/" + otherUserId + "/" + currentUserId, chatId);
-
-        databaseReference.updateChildren(updates)
-                .addOnSuccessListener(aVoid -> {
-                    if (chatSelectedListener != null) {
-                        chatSelectedListener.onChatSelected(chatId, otherUserId);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(getContext(), "Ошибка при создании чата: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-    }
-
     /**
      * Обработчик нажатия на чат в списке.
      * Переключает на экран чата с выбранным пользователем.
@@ -327,17 +306,15 @@ public class ChatListFragment extends Fragment implements ChatAdapter.OnChatClic
 
     /**
      * Очищает ресурсы при уничтожении представления фрагмента.
-     * Удаляет все слушатели сообщений из Firebase.
+     * Подписка на сводку чатов остаётся во ViewModel и отключается при её очистке.
      */
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        for (ChildEventListener listener : messageListeners.values()) {
-            if (listener != null) {
-                databaseReference.removeEventListener(listener);
-            }
+        if (profileCache != null) {
+            profileCache.removeListener(chatAdapter);
+            profileCache.removeListener(searchAdapter);
         }
-        messageListeners.clear();
         binding = null;
     }
 
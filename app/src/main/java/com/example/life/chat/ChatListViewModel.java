@@ -0,0 +1,74 @@
+package com.example.life.chat;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+
+import com.example.life.chat.data.ChatListRepository;
+import com.example.life.chat.model.Chat;
+import com.example.life.chat.model.MessageSearchResult;
+
+import java.util.List;
+
+/**
+ * ViewModel экрана списка чатов.
+ * Хранит поток списка чатов пользователя, чтобы он и подписка Firebase
+ * переживали пересоздание представления.
+ */
+public class ChatListViewModel extends AndroidViewModel {
+
+    private ChatListRepository repository;
+
+    public ChatListViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    /**
+     * Создает и запускает поток списка чатов при первом вызове.
+     *
+     * @param currentUserId ID текущего пользователя
+     */
+    public void init(String currentUserId) {
+        if (repository != null) {
+            return;
+        }
+        repository = new ChatListRepository(getApplication(), currentUserId);
+        repository.start();
+    }
+
+    public LiveData<List<Chat>> getChats() {
+        return repository.getChats();
+    }
+
+    public LiveData<String> getErrors() {
+        return repository.getErrors();
+    }
+
+    public void onErrorShown() {
+        repository.onErrorShown();
+    }
+
+    public LiveData<List<MessageSearchResult>> getSearchResults() {
+        return repository.getSearchResults();
+    }
+
+    public void search(String query) {
+        repository.search(query);
+    }
+
+    @Nullable
+    public Chat findChatWith(String otherUserId) {
+        return repository.findChatWith(otherUserId);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (repository != null) {
+            repository.close();
+        }
+    }
+}
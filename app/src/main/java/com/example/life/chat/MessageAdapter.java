@@ -1,52 +1,101 @@
 package com.example.life.chat;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.text.PrecomputedText;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.life.R;
-import com.example.life.chat.model.Message;
+import com.example.life.chat.model.CompactMessageList;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageViewHolder> {
 
-    private List<Message> messages = new ArrayList<>();
+    static final int VIEW_TYPE_SENT = 0;
+    static final int VIEW_TYPE_RECEIVED = 1;
+
+    private static final float PENDING_ALPHA = 0.5f;
+
+    // Общий фоновый поток для вычисления DiffUtil, чтобы не блокировать главный поток
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MessageTextPrecomputer textPrecomputer = new MessageTextPrecomputer();
+
+    private CompactMessageList messages = CompactMessageList.EMPTY;
     private String currentUserId;
+    @Nullable
+    private final RowViewPool rowViewPool;
+
+    // Поколение последнего запрошенного и последнего применённого списка
+    private int requestedGeneration;
+    private int appliedGeneration;
 
     public MessageAdapter(String currentUserId) {
+        this(currentUserId, null);
+    }
+
+    /**
+     * @param currentUserId ID текущего пользователя
+     * @param rowViewPool заготовки строк, созданные заранее в фоне (может быть null)
+     */
+    public MessageAdapter(String currentUserId, @Nullable RowViewPool rowViewPool) {
         this.currentUserId = currentUserId;
+        this.rowViewPool = rowViewPool;
+        setHasStableIds(true);
     }
 
     @Override
     public int getItemViewType(int position) {
-        Message message = messages.get(position);
-        return message.getSenderId().equals(currentUserId) ? 0 : 1;
+        return messages.getSenderId(position).equals(currentUserId) ? VIEW_TYPE_SENT : VIEW_TYPE_RECEIVED;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableId(messages.getId(position));
     }
 
     @NonNull
     @Override
     public MessageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view;
-        if (viewType == 0) {
-            view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.item_message_sent, parent, false);
-        } else {
-            view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.item_message_received, parent, false);
+        int layoutRes = viewType == VIEW_TYPE_SENT ? R.layout.item_message_sent : R.layout.item_message_received;
+        View view = rowViewPool != null ? rowViewPool.take(layoutRes) : null;
+        if (view == null) {
+            view = LayoutInflater.from(parent.getContext()).inflate(layoutRes, parent, false);
         }
         return new MessageViewHolder(view);
     }
 
     @Override
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
-        Message message = messages.get(position);
-        holder.messageText.setText(message.getText());
+        String messageId = messages.getId(position);
+        String text = messages.getText(position);
+        // Параметры читаются при каждой привязке: строка могла прийти из общего пула или
+        // смениться стиль, а setText(PrecomputedText) с чужими параметрами бросает исключение
+        PrecomputedText.Params textParams = holder.messageText.getTextMetricsParams();
+        textPrecomputer.setParams(holder.getItemViewType(), textParams);
+        // Разметка, подготовленная в фоне, избавляет главный поток от измерения текста
+        PrecomputedText precomputed = textPrecomputer.get(messageId, text, holder.getItemViewType());
+        if (precomputed != null && precomputed.getParams().equals(textParams)) {
+            holder.messageText.setText(precomputed);
+        } else {
+            // Выгруженный текст показывается пустым, пока репозиторий не прочитает его с диска
+            holder.messageText.setText(text);
+        }
+        textPrecomputer.prefetchAround(messages, position, this::getItemViewType);
+        // Неподтверждённые сервером сообщения показываем полупрозрачными
+        holder.itemView.setAlpha(messages.isPending(position) ? PENDING_ALPHA : 1f);
     }
 
     @Override
@@ -54,9 +103,125 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         return messages.size();
     }
 
-    public void setMessages(List<Message> messages) {
-        this.messages = messages;
-        notifyDataSetChanged();
+    public void setMessages(CompactMessageList messages) {
+        setMessages(messages, null);
+    }
+
+    /**
+     * Обновляет список сообщений с минимальным набором уведомлений RecyclerView.
+     * Добавление сообщений в конец или в начало списка обрабатывается сразу через
+     * notifyItemRangeInserted, остальные изменения сравниваются DiffUtil в фоновом потоке.
+     *
+     * @param newMessages новый неизменяемый снимок сообщений
+     * @param onCommitted вызывается на главном потоке после применения списка
+     */
+    public void setMessages(CompactMessageList newMessages, @Nullable Runnable onCommitted) {
+        CompactMessageList oldMessages = this.messages;
+        int generation = ++requestedGeneration;
+
+        // Быстрые пути возможны, только если нет незавершённого сравнения
+        if (appliedGeneration == generation - 1) {
+            int oldSize = oldMessages.size();
+            int newSize = newMessages.size();
+            if (oldSize == 0 || isAppend(oldMessages, newMessages)) {
+                commit(newMessages, generation);
+                notifyItemRangeInserted(oldSize, newSize - oldSize);
+                runCallback(onCommitted);
+                return;
+            }
+            if (isPrepend(oldMessages, newMessages)) {
+                commit(newMessages, generation);
+                notifyItemRangeInserted(0, newSize - oldSize);
+                runCallback(onCommitted);
+                return;
+            }
+        }
+
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new MessageDiffCallback(oldMessages, newMessages));
+            mainHandler.post(() -> {
+                if (generation != requestedGeneration) {
+                    // Пока считали разницу, пришёл более новый список
+                    return;
+                }
+                commit(newMessages, generation);
+                result.dispatchUpdatesTo(this);
+                runCallback(onCommitted);
+            });
+        });
+    }
+
+    private void commit(CompactMessageList newMessages, int generation) {
+        this.messages = newMessages;
+        this.appliedGeneration = generation;
+    }
+
+    private static void runCallback(@Nullable Runnable callback) {
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private static boolean isAppend(CompactMessageList oldMessages, CompactMessageList newMessages) {
+        int oldSize = oldMessages.size();
+        return newMessages.size() > oldSize
+                && Objects.equals(oldMessages.getId(0), newMessages.getId(0))
+                && Objects.equals(oldMessages.getId(oldSize - 1), newMessages.getId(oldSize - 1));
+    }
+
+    private static boolean isPrepend(CompactMessageList oldMessages, CompactMessageList newMessages) {
+        int oldSize = oldMessages.size();
+        int offset = newMessages.size() - oldSize;
+        return offset > 0
+                && Objects.equals(oldMessages.getId(0), newMessages.getId(offset))
+                && Objects.equals(oldMessages.getId(oldSize - 1), newMessages.getId(newMessages.size() - 1));
+    }
+
+    /**
+     * Преобразует push ID сообщения в стабильный 64-битный идентификатор (FNV-1a).
+     */
+    static long stableId(String messageId) {
+        if (messageId == null) {
+            return RecyclerView.NO_ID;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < messageId.length(); i++) {
+            hash ^= messageId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static class MessageDiffCallback extends DiffUtil.Callback {
+        private final CompactMessageList oldMessages;
+        private final CompactMessageList newMessages;
+
+        MessageDiffCallback(CompactMessageList oldMessages, CompactMessageList newMessages) {
+            this.oldMessages = oldMessages;
+            this.newMessages = newMessages;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldMessages.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newMessages.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return Objects.equals(oldMessages.getId(oldItemPosition), newMessages.getId(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return Objects.equals(oldMessages.getText(oldItemPosition), newMessages.getText(newItemPosition))
+                    && Objects.equals(oldMessages.getSenderId(oldItemPosition), newMessages.getSenderId(newItemPosition))
+                    && oldMessages.isPending(oldItemPosition) == newMessages.isPending(newItemPosition);
+        }
     }
 
     static class MessageViewHolder extends RecyclerView.ViewHolder {
@@ -67,4 +232,4 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
             messageText = itemView.findViewById(R.id.messageText);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package com.example.life.chat;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.life.R;
+import com.example.life.chat.data.ProfileCache;
+import com.example.life.chat.model.MessageSearchResult;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Адаптер результатов поиска по сообщениям: имя собеседника и текст найденного сообщения.
+ */
+public class MessageSearchAdapter extends ListAdapter<MessageSearchResult, MessageSearchAdapter.ResultViewHolder> implements ProfileCache.Listener {
+
+    public interface OnResultClickListener {
+        void onResultClick(MessageSearchResult result);
+    }
+
+    private static final DiffUtil.ItemCallback<MessageSearchResult> DIFF_CALLBACK = new DiffUtil.ItemCallback<MessageSearchResult>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MessageSearchResult oldItem, @NonNull MessageSearchResult newItem) {
+            return oldItem.getChatId().equals(newItem.getChatId())
+                    && Objects.equals(oldItem.getMessage().getId(), newItem.getMessage().getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MessageSearchResult oldItem, @NonNull MessageSearchResult newItem) {
+            return Objects.equals(oldItem.getOtherUserId(), newItem.getOtherUserId())
+                    && Objects.equals(oldItem.getMessage().getText(), newItem.getMessage().getText());
+        }
+    };
+
+    private final ProfileCache profileCache;
+    private final OnResultClickListener listener;
+
+    public MessageSearchAdapter(ProfileCache profileCache, OnResultClickListener listener) {
+        super(DIFF_CALLBACK);
+        this.profileCache = profileCache;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onProfilesUpdated(Set<String> uids) {
+        List<MessageSearchResult> results = getCurrentList();
+        for (int i = 0; i < results.size(); i++) {
+            if (uids.contains(results.get(i).getOtherUserId())) {
+                notifyItemChanged(i);
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public ResultViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_chat, parent, false);
+        return new ResultViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ResultViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    class ResultViewHolder extends RecyclerView.ViewHolder {
+        TextView userIdText;
+        TextView messageText;
+
+        ResultViewHolder(@NonNull View itemView) {
+            super(itemView);
+            userIdText = itemView.findViewById(R.id.user_id_text);
+            messageText = itemView.findViewById(R.id.last_message_text);
+
+            itemView.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && listener != null) {
+                    listener.onResultClick(getItem(position));
+                }
+            });
+        }
+
+        void bind(MessageSearchResult result) {
+            userIdText.setText(result.getOtherUserId() != null
+                    ? profileCache.getDisplayName(result.getOtherUserId())
+                    : result.getChatId());
+            messageText.setText(result.getMessage().getText());
+        }
+    }
+}
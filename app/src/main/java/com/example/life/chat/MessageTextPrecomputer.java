@@ -0,0 +1,135 @@
+package com.example.life.chat;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.PrecomputedText;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import com.example.life.chat.model.CompactMessageList;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Заранее вычисляет разметку текста сообщений (PrecomputedText) в фоновом потоке.
+ * При привязке строки списка запрашиваются соседние сообщения (не на каждую привязку,
+ * а когда список сместился на несколько строк или сменился снимок), поэтому к моменту,
+ * когда RecyclerView (в том числе при prefetch) привязывает их, измерение глифов
+ * уже выполнено и setText на главном потоке остаётся только разбить текст на строки.
+ * Результат кэшируется по ID сообщения и типу строки; параметры текста (шрифт, размер,
+ * стратегия переноса) проверяются при выдаче, ширина на PrecomputedText не влияет.
+ * Все методы, кроме фонового вычисления, вызываются на главном потоке.
+ */
+class MessageTextPrecomputer {
+
+    /** Сколько сообщений в каждую сторону от привязанного подготавливать заранее. */
+    private static final int PRECOMPUTE_AROUND = 10;
+    /** Через сколько строк от прошлой подготовки запрашивать соседей снова. */
+    private static final int PREFETCH_STEP = PRECOMPUTE_AROUND / 2;
+    private static final int CACHE_SIZE = 300;
+
+    // Общий фоновый поток для всех чатов: измерение текста не должно конкурировать с DiffUtil
+    private static final Executor TEXT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static class Entry {
+        final String text;
+        final PrecomputedText precomputed;
+
+        Entry(String text, PrecomputedText precomputed) {
+            this.text = text;
+            this.precomputed = precomputed;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Entry> cache = new LruCache<>(CACHE_SIZE);
+    private final Set<String> inFlight = new HashSet<>();
+    // Параметры текста для каждого типа строки, известны после создания первой строки
+    private final SparseArray<PrecomputedText.Params> paramsByViewType = new SparseArray<>();
+    // Снимок и позиция последней подготовки соседей
+    private CompactMessageList prefetchedMessages;
+    private int prefetchedPosition;
+
+    /**
+     * Запоминает параметры текста строки данного типа.
+     *
+     * @param viewType тип строки адаптера
+     * @param params параметры TextView.getTextMetricsParams()
+     */
+    void setParams(int viewType, PrecomputedText.Params params) {
+        PrecomputedText.Params current = paramsByViewType.get(viewType);
+        if (!params.equals(current)) {
+            paramsByViewType.put(viewType, params);
+            // Строки этого типа пропускались без параметров, соседей нужно подготовить заново
+            prefetchedMessages = null;
+        }
+    }
+
+    /**
+     * @return подготовленный текст сообщения или null, если его ещё нет
+     */
+    @Nullable
+    PrecomputedText get(String messageId, @Nullable String text, int viewType) {
+        Entry entry = cache.get(key(messageId, viewType));
+        PrecomputedText.Params params = paramsByViewType.get(viewType);
+        if (entry == null || params == null
+                || !entry.text.equals(text)
+                || !params.equals(entry.precomputed.getParams())) {
+            return null;
+        }
+        return entry.precomputed;
+    }
+
+    /**
+     * Планирует вычисление разметки для сообщений вокруг привязанной позиции.
+     *
+     * @param messages текущий снимок адаптера
+     * @param position привязанная позиция
+     * @param viewTypes тип строки для позиции
+     */
+    void prefetchAround(CompactMessageList messages, int position, ViewTypeResolver viewTypes) {
+        if (messages == prefetchedMessages && Math.abs(position - prefetchedPosition) < PREFETCH_STEP) {
+            return;
+        }
+        prefetchedMessages = messages;
+        prefetchedPosition = position;
+        int from = Math.max(0, position - PRECOMPUTE_AROUND);
+        int to = Math.min(messages.size() - 1, position + PRECOMPUTE_AROUND);
+        for (int i = from; i <= to; i++) {
+            String messageId = messages.getId(i);
+            String text = messages.getText(i);
+            int viewType = viewTypes.getViewType(i);
+            PrecomputedText.Params params = paramsByViewType.get(viewType);
+            if (params == null || text == null || text.isEmpty() || get(messageId, text, viewType) != null) {
+                continue;
+            }
+            String key = key(messageId, viewType);
+            if (!inFlight.add(key)) {
+                continue;
+            }
+            TEXT_EXECUTOR.execute(() -> {
+                PrecomputedText precomputed = PrecomputedText.create(text, params);
+                mainHandler.post(() -> {
+                    inFlight.remove(key);
+                    cache.put(key, new Entry(text, precomputed));
+                });
+            });
+        }
+    }
+
+    private static String key(String messageId, int viewType) {
+        return viewType + ":" + messageId;
+    }
+
+    /**
+     * Определяет тип строки по позиции.
+     */
+    interface ViewTypeResolver {
+        int getViewType(int position);
+    }
+}
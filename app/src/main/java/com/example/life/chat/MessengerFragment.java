@@ -2,6 +2,9 @@ package com.example.life.chat;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,29 +14,30 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.life.chat.data.MessageRepository;
+import com.example.life.chat.data.ProfileCache;
+import com.example.life.chat.model.UserPresence;
 import com.example.life.databinding.FragmentMessengerBinding;
-import com.example.life.chat.model.Message;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.ChildEventListener;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Фрагмент для отображения и управления чатом между пользователями.
  * Обеспечивает отправку и получение сообщений в реальном времени через Firebase.
+ * Данные и подписки хранятся в {@link MessengerViewModel} и переживают пересоздание представления.
  */
 public class MessengerFragment extends Fragment {
 
     private static final String TAG = "MessengerFragment";
 
+    /** За сколько позиций до начала списка начинать подгрузку следующей страницы. */
+    private static final int LOAD_MORE_THRESHOLD = 5;
+    /** Через сколько позиций прокрутки сообщать видимую область, не дожидаясь остановки. */
+    private static final int VIEWPORT_REPORT_STEP = 50;
+
     /**
      * Интерфейс для обработки нажатия кнопки меню.
      * Позволяет фрагменту сообщить активности о необходимости
@@ -47,19 +51,28 @@ public class MessengerFragment extends Fragment {
 
     private FragmentMessengerBinding binding;
     private MessageAdapter messageAdapter;
-    private List<Message> messageList;
+    private MessengerViewModel viewModel;
+    private ProfileCache profileCache;
+    @Nullable
+    private RowViewPool rowViewPool;
+    private UserPresence peerPresence = UserPresence.UNKNOWN;
+    private boolean peerTyping = false;
 
-    private FirebaseDatabase firebaseDatabase;
-    private DatabaseReference databaseReference;
     private FirebaseAuth auth;
     private String currentUserId;
     private String chatId;
     private String otherUserId;
 
-    private ChildEventListener messagesListener;
-    private DatabaseReference messagesRef;
+    // При восстановлении представления позицию прокрутки восстанавливает RecyclerView
+    private boolean restoringScrollPosition;
+    private int reportedViewportFirst = -1;
 
-    private RecyclerView recyclerView;
+    // Имя собеседника обновляется, когда его профиль загружен или изменился
+    private final ProfileCache.Listener profileListener = uids -> {
+        if (uids.contains(otherUserId)) {
+            showUserName();
+        }
+    };
 
     /**
      * Создает новый экземпляр фрагмента с указанными параметрами чата.
@@ -91,6 +104,9 @@ public class MessengerFragment extends Fragment {
         } else {
             Log.e(TAG, context.toString() + " must implement OnMenuButtonClickListener");
         }
+        if (context instanceof RowViewPool.Provider) {
+            rowViewPool = ((RowViewPool.Provider) context).getRowViewPool();
+        }
     }
 
     /**
@@ -103,6 +119,10 @@ public class MessengerFragment extends Fragment {
             chatId = getArguments().getString("chatId");
             otherUserId = getArguments().getString("otherUserId");
         }
+        // Строки первого экрана создаются в фоне, пока создаётся представление и грузятся сообщения
+        if (rowViewPool != null) {
+            rowViewPool.preinflateMessageRows();
+        }
     }
 
     /**
@@ -117,14 +137,12 @@ public class MessengerFragment extends Fragment {
 
     /**
      * Инициализирует компоненты интерфейса и настраивает обработчики событий.
-     * Подключается к Firebase и настраивает слушатель сообщений.
+     * Подписывается на поток сообщений чата из ViewModel.
      */
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        firebaseDatabase = FirebaseDatabase.getInstance();
-        databaseReference = firebaseDatabase.getReference();
         auth = FirebaseAuth.getInstance();
 
         if (auth.getCurrentUser() != null) {
@@ -137,19 +155,23 @@ public class MessengerFragment extends Fragment {
         if (chatId == null || otherUserId == null) {
             Toast.makeText(getContext(), "Ошибка: ID чата или ID другого пользователя отсутствует", Toast.LENGTH_SHORT).show();
         } else {
-            binding.userStatusTextView.setText(otherUserId);
+            profileCache = ProfileCache.getInstance(requireContext());
+            profileCache.addListener(profileListener);
+            showUserName();
         }
 
-        messageList = new ArrayList<>();
-        messageAdapter = new MessageAdapter(currentUserId);
-
-        binding.messagesRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        binding.messagesRecyclerView.setAdapter(messageAdapter);
+        messageAdapter = new MessageAdapter(currentUserId, rowViewPool);
+        restoringScrollPosition = savedInstanceState != null;
 
-        if (chatId != null) {
-            messagesRef = databaseReference.child("messages").child(chatId);
-            loadMessages();
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        if (rowViewPool != null) {
+            // Строки закрытого чата возвращаются в общий пул для следующего; скрытый
+            // фрагмент не отсоединяет список и свои строки сохраняет
+            layoutManager.setRecycleChildrenOnDetach(true);
+            binding.messagesRecyclerView.setRecycledViewPool(rowViewPool.getMessageViewPool());
         }
+        binding.messagesRecyclerView.setLayoutManager(layoutManager);
+        binding.messagesRecyclerView.setAdapter(messageAdapter);
 
         binding.sendButton.setOnClickListener(v -> {
             String messageText = binding.messageEditText.getText().toString().trim();
@@ -165,74 +187,112 @@ public class MessengerFragment extends Fragment {
                 menuButtonClickListener.onMenuButtonClick();
             }
         });
-    }
 
-    /**
-     * Загружает сообщения из Firebase и настраивает слушатель для обновлений в реальном времени.
-     * При получении новых сообщений обновляет список и прокручивает к последнему сообщению.
-     */
-    private void loadMessages() {
-        if (messagesRef == null) {
-            Log.e(TAG, "loadMessages: messagesRef is null!");
+        if (chatId == null || otherUserId == null) {
             return;
         }
-        messagesListener = messagesRef.addChildEventListener(new ChildEventListener() {
+
+        viewModel = new ViewModelProvider(this).get(MessengerViewModel.class);
+        viewModel.init(chatId, currentUserId, otherUserId);
+
+        binding.messagesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                Message message = snapshot.getValue(Message.class);
-                if (message != null) {
-                    messageList.add(message);
-                    messageAdapter.setMessages(messageList);
-                    binding.messagesRecyclerView.scrollToPosition(messageList.size() - 1);
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                if (dy < 0 && first <= LOAD_MORE_THRESHOLD) {
+                    viewModel.loadOlderMessages();
+                }
+                // Видимая область передаётся не на каждый кадр, а через несколько экранов и после остановки
+                if (Math.abs(first - reportedViewportFirst) >= VIEWPORT_REPORT_STEP) {
+                    reportViewport(layoutManager);
                 }
             }
 
             @Override
-            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    reportViewport(layoutManager);
+                }
+            }
+        });
 
+        viewModel.getMessages().observe(getViewLifecycleOwner(), this::onMessagesUpdated);
+        // Один общий слушатель статуса на собеседника, пока экран чата существует
+        viewModel.getPeerPresence().observe(getViewLifecycleOwner(), presence -> {
+            peerPresence = presence;
+            showUserName();
+        });
+        viewModel.getPeerTyping().observe(getViewLifecycleOwner(), typing -> {
+            peerTyping = Boolean.TRUE.equals(typing);
+            showUserName();
+        });
+        binding.messageEditText.addTextChangedListener(new TextWatcher() {
             @Override
-            public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
 
             @Override
-            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                viewModel.onInputChanged(s.toString());
+            }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Toast.makeText(getContext(), "Ошибка загрузки сообщений: " + error.getMessage(), Toast.LENGTH_SHORT).show();
-                Log.e(TAG, "Ошибка загрузки сообщений", error.toException());
+            public void afterTextChanged(Editable s) {}
+        });
+        viewModel.getErrors().observe(getViewLifecycleOwner(), error -> {
+            if (error != null) {
+                Toast.makeText(getContext(), error, Toast.LENGTH_SHORT).show();
+                viewModel.onErrorShown();
             }
         });
     }
 
     /**
-     * Отправляет новое сообщение в Firebase.
-     * Создает уникальный ID для сообщения и сохраняет его в базе данных.
+     * Передает новый список сообщений адаптеру.
+     * Если сообщения добавлены в конец, после применения списка прокручивает к последнему.
+     *
+     * @param update очередное состояние списка сообщений
+     */
+    private void onMessagesUpdated(MessageRepository.MessageListUpdate update) {
+        boolean scrollToEnd = update.isAppendedAtEnd() && !restoringScrollPosition;
+        restoringScrollPosition = false;
+        messageAdapter.setMessages(update.getMessages(), scrollToEnd ? this::scrollToLastMessage : null);
+    }
+
+    private void reportViewport(LinearLayoutManager layoutManager) {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        reportedViewportFirst = first;
+        viewModel.onViewportChanged(first, layoutManager.findLastVisibleItemPosition());
+    }
+
+    /**
+     * Прокручивает список к последнему сообщению, если представление ещё существует.
+     */
+    private void scrollToLastMessage() {
+        if (binding != null && messageAdapter.getItemCount() > 0) {
+            binding.messagesRecyclerView.scrollToPosition(messageAdapter.getItemCount() - 1);
+        }
+    }
+
+    /**
+     * Отправляет новое сообщение через ViewModel.
+     * Сообщение сразу появляется в списке, поэтому поле ввода очищается без ожидания сети.
      * 
      * @param text текст сообщения для отправки
      */
     private void sendMessage(String text) {
-        if (currentUserId == null || chatId == null) {
+        if (currentUserId == null || viewModel == null) {
             Toast.makeText(getContext(), "Ошибка: Не удалось отправить сообщение (пользователь или чат не определен)", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        String messageId = messagesRef.push().getKey();
-        if (messageId == null) {
-            Toast.makeText(getContext(), "Ошибка: Не удалось создать ID сообщения", Toast.LENGTH_SHORT).show();
-            return;
+        if (viewModel.sendMessage(text)) {
+            binding.messageEditText.setText("");
+        } else {
+            Toast.makeText(getContext(), "Ошибка: Не удалось отправить сообщение", Toast.LENGTH_SHORT).show();
         }
-
-        long timestamp = System.currentTimeMillis();
-        Message message = new Message(messageId, text, currentUserId, timestamp);
-
-        messagesRef.child(messageId).setValue(message)
-                .addOnSuccessListener(aVoid -> {
-                    binding.messageEditText.setText("");
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(getContext(), "Ошибка отправки сообщения: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    Log.e(TAG, "Ошибка отправки сообщения", e);
-                });
     }
 
     /**
@@ -246,17 +306,40 @@ public class MessengerFragment extends Fragment {
 
     /**
      * Очищает ресурсы при уничтожении представления фрагмента.
-     * Удаляет слушатель сообщений из Firebase.
+     * Подписки Firebase остаются во ViewModel и отключаются при её очистке.
      */
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (messagesRef != null && messagesListener != null) {
-            messagesRef.removeEventListener(messagesListener);
+        if (profileCache != null) {
+            profileCache.removeListener(profileListener);
         }
         binding = null;
     }
 
+    /**
+     * Показывает имя собеседника (пока профиль не загружен — его ID) и его статус:
+     * набирает сообщение, в сети или время последнего визита.
+     */
+    private void showUserName() {
+        if (binding == null) {
+            return;
+        }
+        String name = profileCache.getDisplayName(otherUserId);
+        String status;
+        if (peerTyping) {
+            status = "печатает…";
+        } else if (peerPresence.isOnline()) {
+            status = "в сети";
+        } else if (peerPresence.getLastSeen() > 0) {
+            status = "был(а) " + DateUtils.getRelativeTimeSpanString(peerPresence.getLastSeen(),
+                    System.currentTimeMillis(), DateUtils.MINUTE_IN_MILLIS);
+        } else {
+            status = null;
+        }
+        binding.userStatusTextView.setText(status != null ? name + " · " + status : name);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -265,11 +348,29 @@ public class MessengerFragment extends Fragment {
     @Override
     public void onPause() {
         super.onPause();
+        if (viewModel != null) {
+            viewModel.setVisible(false);
+        }
     }
 
     @Override
     public void onResume() {
         super.onResume();
+        if (viewModel != null) {
+            viewModel.setVisible(!isHidden());
+        }
+    }
+
+    /**
+     * Закэшированный чат скрывается и показывается без пересоздания,
+     * поэтому видимость для отметок о прочтении передаётся отсюда.
+     */
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (viewModel != null) {
+            viewModel.setVisible(!hidden && isResumed());
+        }
     }
 
     @Override
@@ -0,0 +1,91 @@
+package com.example.life.chat;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+
+import com.example.life.chat.data.MessageRepository;
+import com.example.life.chat.data.PresenceRepository;
+import com.example.life.chat.model.UserPresence;
+
+/**
+ * ViewModel экрана чата.
+ * Хранит поток сообщений чата, чтобы загруженные данные и подписки Firebase
+ * переживали пересоздание представления (поворот экрана, смену темы).
+ */
+public class MessengerViewModel extends AndroidViewModel {
+
+    private MessageRepository repository;
+    private String otherUserId;
+
+    public MessengerViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    /**
+     * Создает и запускает поток сообщений чата при первом вызове.
+     * Повторные вызовы (после пересоздания представления) ничего не делают.
+     *
+     * @param chatId ID чата
+     * @param currentUserId ID текущего пользователя
+     * @param otherUserId ID собеседника
+     */
+    public void init(String chatId, String currentUserId, String otherUserId) {
+        if (repository != null) {
+            return;
+        }
+        this.otherUserId = otherUserId;
+        repository = new MessageRepository(getApplication(), chatId, currentUserId, otherUserId);
+        repository.start();
+    }
+
+    public LiveData<MessageRepository.MessageListUpdate> getMessages() {
+        return repository.getMessages();
+    }
+
+    public LiveData<String> getErrors() {
+        return repository.getErrors();
+    }
+
+    public void onErrorShown() {
+        repository.onErrorShown();
+    }
+
+    public void loadOlderMessages() {
+        repository.loadOlderMessages();
+    }
+
+    public void onViewportChanged(int first, int last) {
+        repository.onViewportChanged(first, last);
+    }
+
+    public boolean sendMessage(String text) {
+        return repository.sendMessage(text);
+    }
+
+    public void setVisible(boolean visible) {
+        repository.setVisible(visible);
+    }
+
+    public void onInputChanged(String text) {
+        repository.onInputChanged(text);
+    }
+
+    public LiveData<Boolean> getPeerTyping() {
+        return repository.getPeerTyping();
+    }
+
+    public LiveData<UserPresence> getPeerPresence() {
+        return PresenceRepository.getInstance().observe(otherUserId);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (repository != null) {
+            repository.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.life.chat;
+
+import android.content.Context;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.Nullable;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.life.R;
+
+import java.util.ArrayDeque;
+
+/**
+ * Заготовки строк списков чатов и сообщений.
+ * Строки заранее создаются AsyncLayoutInflater в фоновом потоке, пока загружаются данные,
+ * и забираются адаптерами в onCreateViewHolder вместо синхронного inflate.
+ * Также хранит общий для всех экранов чата RecycledViewPool: при переключении между
+ * чатами новый список берёт уже созданные строки предыдущего.
+ * Живёт столько же, сколько активность, и хранит её контекст, поэтому не должен
+ * переживать её пересоздание. Все методы вызываются на главном потоке.
+ */
+public class RowViewPool {
+
+    /**
+     * Владелец пула (активность), у которого фрагменты получают его в onAttach.
+     */
+    public interface Provider {
+        RowViewPool getRowViewPool();
+    }
+
+    /** Сколько строк сообщений каждого типа держать в общем пуле. */
+    private static final int MAX_RECYCLED_MESSAGE_ROWS = 20;
+    private static final int PREINFLATED_MESSAGE_ROWS = 8;
+    private static final int PREINFLATED_CHAT_ROWS = 10;
+
+    private final AsyncLayoutInflater inflater;
+    // Родитель только для создания LayoutParams строк, в иерархию не добавляется
+    private final FrameLayout layoutParent;
+    private final SparseArray<ArrayDeque<View>> readyViews = new SparseArray<>();
+    private final SparseArray<Integer> requestedCounts = new SparseArray<>();
+    private final RecyclerView.RecycledViewPool messageViewPool = new RecyclerView.RecycledViewPool();
+
+    public RowViewPool(Context context) {
+        this.inflater = new AsyncLayoutInflater(context);
+        this.layoutParent = new FrameLayout(context);
+        messageViewPool.setMaxRecycledViews(MessageAdapter.VIEW_TYPE_SENT, MAX_RECYCLED_MESSAGE_ROWS);
+        messageViewPool.setMaxRecycledViews(MessageAdapter.VIEW_TYPE_RECEIVED, MAX_RECYCLED_MESSAGE_ROWS);
+    }
+
+    /**
+     * Заранее создаёт строки списка чатов.
+     */
+    public void preinflateChatRows() {
+        preinflate(R.layout.item_chat, PREINFLATED_CHAT_ROWS);
+    }
+
+    /**
+     * Заранее создаёт строки сообщений обоих типов для первого экрана чата.
+     */
+    public void preinflateMessageRows() {
+        preinflate(R.layout.item_message_received, PREINFLATED_MESSAGE_ROWS);
+        preinflate(R.layout.item_message_sent, PREINFLATED_MESSAGE_ROWS);
+    }
+
+    /** @return общий пул строк сообщений для всех экранов чата */
+    public RecyclerView.RecycledViewPool getMessageViewPool() {
+        return messageViewPool;
+    }
+
+    /**
+     * Забирает готовую строку.
+     *
+     * @param layoutRes разметка строки
+     * @return строка без родителя или null, если заготовок не осталось
+     */
+    @Nullable
+    public View take(@LayoutRes int layoutRes) {
+        ArrayDeque<View> views = readyViews.get(layoutRes);
+        return views != null ? views.poll() : null;
+    }
+
+    /**
+     * Дополняет запас заготовок до count с учётом ещё не созданных.
+     */
+    private void preinflate(@LayoutRes int layoutRes, int count) {
+        ArrayDeque<View> views = readyViews.get(layoutRes);
+        if (views == null) {
+            views = new ArrayDeque<>();
+            readyViews.put(layoutRes, views);
+        }
+        int requested = requestedCounts.get(layoutRes, 0);
+        ArrayDeque<View> target = views;
+        for (int i = views.size() + requested; i < count; i++) {
+            requestedCounts.put(layoutRes, requestedCounts.get(layoutRes, 0) + 1);
+            inflater.inflate(layoutRes, layoutParent, (view, resid, parent) -> {
+                requestedCounts.put(resid, requestedCounts.get(resid, 1) - 1);
+                target.add(view);
+            });
+        }
+    }
+}
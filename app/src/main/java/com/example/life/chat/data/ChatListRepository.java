@@ -0,0 +1,372 @@
+package com.example.life.chat.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.life.chat.model.Chat;
+import com.example.life.chat.model.ChatListIndex;
+import com.example.life.chat.model.ChatMapper;
+import com.example.life.chat.model.MessageSearchResult;
+import com.example.life.core.FirebaseListenerRegistry;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Поток списка чатов пользователя.
+ * Сначала отдаёт сохранённый на диске список, затем держит один слушатель на сводке
+ * чатов user_chats/{uid}, где для каждого собеседника хранятся ID чата, последнее
+ * сообщение, его время и количество непрочитанных. Сохранённый список сверяется с первым
+ * полным снимком сводок, поэтому удалённые на сервере чаты исчезают и с диска.
+ * Список упорядочен по времени последнего сообщения и хранится в {@link ChatListIndex}.
+ * Живёт во ViewModel и переживает пересоздание представления.
+ * Публичные методы вызываются на главном потоке, а разбор сводок и индекс списка
+ * принадлежат {@link SyncThread#EXECUTOR}.
+ */
+public class ChatListRepository {
+
+    private static final String TAG = "ChatListRepository";
+
+    /** Сколько найденных сообщений показывать. */
+    private static final int SEARCH_LIMIT = 50;
+    /** Пауза после ввода перед запуском поиска. */
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+
+    private final String currentUserId;
+    private final Query userChatsQuery;
+    private final LocalChatDatabase localDatabase;
+    private final FirebaseListenerRegistry listenerRegistry;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final MutableLiveData<List<Chat>> chats = new MutableLiveData<>();
+    private final MutableLiveData<String> errors = new MutableLiveData<>();
+    private final MutableLiveData<List<MessageSearchResult>> searchResults = new MutableLiveData<>();
+    // Снимок индекса по собеседнику, опубликованный вместе со списком (только главный поток)
+    private Map<String, Chat> publishedChatsByUser = Collections.emptyMap();
+
+    // Индекс и флаги изменяются только в SyncThread.EXECUTOR
+    private final ChatListIndex chatIndex = new ChatListIndex();
+    private boolean publishScheduled = false;
+    // Первый полный снимок user_chats получен и локальная таблица сверена с ним
+    private boolean reconciled = false;
+
+    private boolean started = false;
+    private volatile boolean closed = false;
+    private Runnable pendingSearch;
+    private int searchGeneration = 0;
+
+    public ChatListRepository(Context context, String currentUserId) {
+        this.currentUserId = currentUserId;
+        this.userChatsQuery = FirebaseDatabase.getInstance().getReference()
+                .child("user_chats").child(currentUserId);
+        this.localDatabase = LocalChatDatabase.getInstance(context);
+        this.listenerRegistry = new FirebaseListenerRegistry(TAG);
+        SyncPolicy.getInstance(context).restore(currentUserId);
+    }
+
+    /** @return актуальный список чатов (неизменяемый) */
+    public LiveData<List<Chat>> getChats() {
+        return chats;
+    }
+
+    /** @return текст последней ошибки для показа пользователю (null после показа) */
+    public LiveData<String> getErrors() {
+        return errors;
+    }
+
+    /** @return результаты последнего поиска по сообщениям (null, если поиск не активен) */
+    public LiveData<List<MessageSearchResult>> getSearchResults() {
+        return searchResults;
+    }
+
+    /**
+     * Ищет сообщения во всех чатах по локальному полнотекстовому индексу, без обращения
+     * к сети. Поиск запускается после паузы в вводе, устаревшие результаты отбрасываются.
+     *
+     * @param query строка поиска, пустая строка завершает поиск
+     */
+    public void search(String query) {
+        int generation = ++searchGeneration;
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        String trimmed = query.trim();
+        if (trimmed.isEmpty()) {
+            searchResults.setValue(null);
+            return;
+        }
+        pendingSearch = () -> {
+            pendingSearch = null;
+            LocalChatDatabase.DISK_IO.execute(() -> {
+                List<MessageSearchResult> results = localDatabase.searchMessages(trimmed, SEARCH_LIMIT);
+                mainHandler.post(() -> {
+                    if (!closed && generation == searchGeneration) {
+                        searchResults.setValue(results);
+                    }
+                });
+            });
+        };
+        mainHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    /**
+     * Сбрасывает последнюю ошибку после того, как она была показана.
+     */
+    public void onErrorShown() {
+        errors.setValue(null);
+    }
+
+    /**
+     * Ищет чат с собеседником в последнем опубликованном списке.
+     *
+     * @param otherUserId ID собеседника
+     * @return чат или null, если его нет в списке
+     */
+    @Nullable
+    public Chat findChatWith(String otherUserId) {
+        return publishedChatsByUser.get(otherUserId);
+    }
+
+    /**
+     * Запускает загрузку списка чатов. Повторные вызовы игнорируются.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            List<Chat> cached = localDatabase.loadChats();
+            SyncThread.EXECUTOR.execute(() -> {
+                // После сверки с сервером кэш устарел и может содержать удалённые чаты
+                if (closed || reconciled || cached.isEmpty()) {
+                    return;
+                }
+                // Чаты, уже пришедшие из сети, свежее кэша
+                for (Chat chat : cached) {
+                    if (!chatIndex.contains(chat.getId())) {
+                        chatIndex.put(chat);
+                    }
+                }
+                publish();
+            });
+        });
+
+        listenerRegistry.addChildEventListener(userChatsQuery, new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                SyncThread.EXECUTOR.execute(() -> onChatSummaryChanged(snapshot));
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                SyncThread.EXECUTOR.execute(() -> onChatSummaryChanged(snapshot));
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                SyncThread.EXECUTOR.execute(() -> {
+                    Chat summary = readChatSummary(snapshot);
+                    if (summary != null) {
+                        removeChat(summary.getId());
+                    }
+                });
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                errors.setValue("Ошибка загрузки чатов: " + error.getMessage());
+                Log.e(TAG, "loadChats: onCancelled for uid=" + currentUserId, error.toException());
+            }
+        });
+
+        // Значение приходит после onChildAdded всех сводок и использует ту же загрузку
+        userChatsQuery.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                SyncThread.EXECUTOR.execute(() -> reconcile(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "reconcile: onCancelled for uid=" + currentUserId, error.toException());
+            }
+        });
+    }
+
+    /**
+     * Отключает все слушатели. После вызова репозиторий больше не используется.
+     */
+    public void close() {
+        closed = true;
+        listenerRegistry.clear();
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+        }
+    }
+
+    /**
+     * Заранее запрашивает сводку чатов пользователя, не дожидаясь создания экрана списка.
+     * Запрос открывает подключение к базе, а слушатель списка, подключённый позже к тому же
+     * пути, использует уже идущую загрузку вместо новой.
+     *
+     * @param userId ID пользователя
+     */
+    public static void prefetch(String userId) {
+        FirebaseDatabase.getInstance().getReference()
+                .child("user_chats").child(userId)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Log.d(TAG, "prefetch: " + snapshot.getChildrenCount() + " chats for uid=" + userId);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "prefetch: onCancelled for uid=" + userId, error.toException());
+                    }
+                });
+    }
+
+    /**
+     * Читает сводку чата из user_chats/{uid}/{otherUid}.
+     * Поддерживает старый формат, в котором значением был только ID чата.
+     *
+     * @param snapshot снимок записи сводки
+     * @return чат или null, если запись некорректна
+     */
+    @Nullable
+    public static Chat readChatSummary(DataSnapshot snapshot) {
+        return ChatMapper.fromSummary(snapshot.getKey(), snapshot.getValue());
+    }
+
+    /**
+     * Обрабатывает добавление или изменение сводки чата:
+     * обновляет существующую строку списка или добавляет новую.
+     * Чат с новым сообщением переносится в начало списка.
+     *
+     * @param snapshot снимок записи сводки
+     */
+    private void onChatSummaryChanged(DataSnapshot snapshot) {
+        Chat summary = readChatSummary(snapshot);
+        if (summary == null || closed) {
+            return;
+        }
+        Chat updated = updateChatLastMessage(summary);
+        chatIndex.put(updated);
+        // Сводки первой загрузки сохраняются вместе при сверке, а не отдельной записью каждая
+        if (reconciled) {
+            LocalChatDatabase.DISK_IO.execute(() -> localDatabase.saveChat(updated));
+        }
+        publish();
+    }
+
+    /**
+     * Сверяет список с первым полным снимком user_chats: чаты из кэша, удалённые
+     * на сервере, убираются из списка, а локальная таблица заменяется одной транзакцией.
+     *
+     * @param snapshot снимок узла user_chats/{uid}
+     */
+    private void reconcile(DataSnapshot snapshot) {
+        if (closed || reconciled) {
+            return;
+        }
+        reconciled = true;
+        Set<String> serverChatIds = new HashSet<>();
+        for (DataSnapshot child : snapshot.getChildren()) {
+            Chat summary = readChatSummary(child);
+            if (summary != null) {
+                serverChatIds.add(summary.getId());
+            }
+        }
+        boolean removed = false;
+        for (Chat chat : chatIndex.toList()) {
+            if (!serverChatIds.contains(chat.getId())) {
+                removed |= chatIndex.remove(chat.getId());
+            }
+        }
+        List<Chat> current = chatIndex.toList();
+        LocalChatDatabase.DISK_IO.execute(() -> localDatabase.replaceChats(current));
+        if (removed) {
+            publish();
+        }
+    }
+
+    /**
+     * Обновляет информацию о последнем сообщении в чате.
+     * Элементы списка не изменяются на месте: обновлённый чат заменяется новым объектом,
+     * чтобы адаптер мог сравнить старое и новое состояние.
+     * Сводки старого формата (без времени сообщения) не затирают уже известный текст.
+     *
+     * @param summary новая сводка чата
+     * @return новое состояние чата
+     */
+    private Chat updateChatLastMessage(Chat summary) {
+        Chat current = chatIndex.get(summary.getId());
+        if (current == null || summary.getLastMessageTimestamp() >= current.getLastMessageTimestamp()) {
+            return summary;
+        }
+        Chat updated = new Chat(summary.getId(), summary.getOtherUserId(), current.getLastMessage(), current.getLastMessageTimestamp());
+        updated.setLastMessageSenderId(current.getLastMessageSenderId());
+        updated.setUnreadCount(summary.getUnreadCount());
+        updated.setPeerLastReadTimestamp(summary.getPeerLastReadTimestamp());
+        return updated;
+    }
+
+    /**
+     * Удаляет чат из списка и из локальной базы.
+     *
+     * @param chatId ID чата
+     */
+    private void removeChat(String chatId) {
+        if (chatIndex.remove(chatId)) {
+            publish();
+        }
+        LocalChatDatabase.DISK_IO.execute(() -> localDatabase.deleteChat(chatId));
+    }
+
+    /**
+     * Публикует список один раз на серию изменений: при первом подключении Firebase
+     * присылает все сводки подряд, и каждая из них не должна порождать отдельный список.
+     * Копия списка снимается в потоке синхронизации после уже поставленных в очередь сводок,
+     * на главный поток передаётся только готовый неизменяемый список.
+     */
+    private void publish() {
+        if (publishScheduled) {
+            return;
+        }
+        publishScheduled = true;
+        SyncThread.EXECUTOR.execute(() -> {
+            publishScheduled = false;
+            List<Chat> list = chatIndex.toList();
+            Map<String, Chat> chatsByUser = chatIndex.toUserMap();
+            mainHandler.post(() -> {
+                if (!closed) {
+                    publishedChatsByUser = chatsByUser;
+                    chats.setValue(list);
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,494 @@
+package com.example.life.chat.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.life.chat.model.Chat;
+import com.example.life.chat.model.Message;
+import com.example.life.chat.model.MessageSearchResult;
+import com.example.life.chat.model.UserProfile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Локальная база данных сообщений и чатов.
+ * Сообщения хранятся по ключу (chatId, push ID), поэтому сортировка по id
+ * совпадает с порядком сообщений в Firebase.
+ * Все методы чтения и записи блокирующие и должны вызываться из {@link #DISK_IO}.
+ */
+public class LocalChatDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "life_chats.db";
+    private static final int DATABASE_VERSION = 6;
+
+    private static final String TABLE_MESSAGES = "messages";
+    private static final String TABLE_CHATS = "chats";
+    private static final String TABLE_OUTBOX = "outbox";
+    private static final String TABLE_MESSAGES_FTS = "messages_fts";
+    private static final String TABLE_PROFILES = "profiles";
+
+    // Не больше стольких ID в одном IN (...): лимит параметров SQLite на старых версиях — 999
+    private static final int MAX_IN_ARGS = 500;
+
+    /** Единственный поток для работы с диском: гарантирует порядок записей. */
+    public static final Executor DISK_IO = Executors.newSingleThreadExecutor();
+
+    private static volatile LocalChatDatabase instance;
+
+    /**
+     * Возвращает единственный экземпляр базы данных для приложения.
+     *
+     * @param context любой контекст, используется контекст приложения
+     */
+    public static LocalChatDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LocalChatDatabase.class) {
+                if (instance == null) {
+                    instance = new LocalChatDatabase(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private LocalChatDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " ("
+                + "chat_id TEXT NOT NULL, "
+                + "id TEXT NOT NULL, "
+                + "text TEXT, "
+                + "sender_id TEXT, "
+                + "timestamp INTEGER NOT NULL, "
+                + "PRIMARY KEY (chat_id, id))");
+        db.execSQL("CREATE TABLE " + TABLE_CHATS + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "other_user_id TEXT, "
+                + "last_message TEXT, "
+                + "last_message_timestamp INTEGER NOT NULL DEFAULT 0)");
+        addChatReadColumns(db);
+        createOutboxTable(db);
+        createSearchIndex(db);
+        createProfilesTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createOutboxTable(db);
+        } else if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN handed_off INTEGER NOT NULL DEFAULT 0");
+        }
+        if (oldVersion < 4) {
+            createSearchIndex(db);
+            db.execSQL("INSERT INTO " + TABLE_MESSAGES_FTS + " (docid, text) SELECT rowid, text FROM " + TABLE_MESSAGES);
+        }
+        if (oldVersion < 5) {
+            addChatReadColumns(db);
+        }
+        if (oldVersion < 6) {
+            createProfilesTable(db);
+        }
+    }
+
+    private static void addChatReadColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_CHATS + " ADD COLUMN unread_count INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_CHATS + " ADD COLUMN last_message_sender_id TEXT");
+        db.execSQL("ALTER TABLE " + TABLE_CHATS + " ADD COLUMN peer_last_read_timestamp INTEGER NOT NULL DEFAULT 0");
+    }
+
+    private static void createProfilesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_PROFILES + " ("
+                + "uid TEXT PRIMARY KEY, "
+                + "display_name TEXT NOT NULL, "
+                + "email TEXT, "
+                + "fetched_at INTEGER NOT NULL)");
+    }
+
+    private static void createOutboxTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "chat_id TEXT NOT NULL, "
+                + "other_user_id TEXT NOT NULL, "
+                + "text TEXT, "
+                + "sender_id TEXT, "
+                + "timestamp INTEGER NOT NULL, "
+                + "handed_off INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    /**
+     * Полнотекстовый индекс по тексту сообщений (FTS4, docid = rowid строки messages).
+     * Индекс обновляется триггерами при каждой записи сообщений. Перед заменой строки
+     * (INSERT OR REPLACE) старая запись индекса удаляется триггером BEFORE INSERT,
+     * так как удаление при REPLACE не вызывает триггеры DELETE.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_MESSAGES_FTS + " USING fts4(text, tokenize=unicode61)");
+        db.execSQL("CREATE TRIGGER messages_fts_before_insert BEFORE INSERT ON " + TABLE_MESSAGES + " BEGIN "
+                + "DELETE FROM " + TABLE_MESSAGES_FTS + " WHERE docid IN "
+                + "(SELECT rowid FROM " + TABLE_MESSAGES + " WHERE chat_id = new.chat_id AND id = new.id); END");
+        db.execSQL("CREATE TRIGGER messages_fts_after_insert AFTER INSERT ON " + TABLE_MESSAGES + " BEGIN "
+                + "INSERT INTO " + TABLE_MESSAGES_FTS + " (docid, text) VALUES (new.rowid, new.text); END");
+        db.execSQL("CREATE TRIGGER messages_fts_after_delete AFTER DELETE ON " + TABLE_MESSAGES + " BEGIN "
+                + "DELETE FROM " + TABLE_MESSAGES_FTS + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER messages_fts_after_update AFTER UPDATE OF text ON " + TABLE_MESSAGES + " BEGIN "
+                + "UPDATE " + TABLE_MESSAGES_FTS + " SET text = new.text WHERE docid = new.rowid; END");
+    }
+
+    /**
+     * Ищет сообщения во всех сохранённых чатах. Каждое слово запроса ищется
+     * как префикс, все слова должны встречаться в сообщении.
+     *
+     * @param query строка поиска
+     * @param limit максимальное количество результатов
+     * @return найденные сообщения, сначала новые
+     */
+    public List<MessageSearchResult> searchMessages(String query, int limit) {
+        List<MessageSearchResult> results = new ArrayList<>();
+        String matchQuery = toMatchQuery(query);
+        if (matchQuery.isEmpty()) {
+            return results;
+        }
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT m.chat_id, c.other_user_id, m.id, m.text, m.sender_id, m.timestamp"
+                        + " FROM " + TABLE_MESSAGES_FTS + " f"
+                        + " JOIN " + TABLE_MESSAGES + " m ON m.rowid = f.docid"
+                        + " LEFT JOIN " + TABLE_CHATS + " c ON c.id = m.chat_id"
+                        + " WHERE " + TABLE_MESSAGES_FTS + " MATCH ?"
+                        + " ORDER BY m.timestamp DESC LIMIT ?",
+                new String[]{matchQuery, String.valueOf(limit)})) {
+            while (cursor.moveToNext()) {
+                Message message = new Message(cursor.getString(2), cursor.getString(3),
+                        cursor.getString(4), cursor.getLong(5));
+                results.add(new MessageSearchResult(cursor.getString(0), cursor.getString(1), message));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Преобразует ввод пользователя в запрос MATCH: слова из букв и цифр с поиском
+     * по префиксу. Служебный синтаксис FTS (кавычки, OR, NEAR, -) отбрасывается.
+     */
+    static String toMatchQuery(String query) {
+        StringBuilder matchQuery = new StringBuilder();
+        for (String token : query.toLowerCase().split("[^\\p{L}\\p{Nd}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (matchQuery.length() > 0) {
+                matchQuery.append(' ');
+            }
+            matchQuery.append(token).append('*');
+        }
+        return matchQuery.toString();
+    }
+
+    /**
+     * Загружает последние сообщения чата.
+     *
+     * @param chatId ID чата
+     * @param limit максимальное количество сообщений
+     * @return сообщения в хронологическом порядке
+     */
+    public List<Message> loadLatestMessages(String chatId, int limit) {
+        return queryMessages("chat_id = ?", new String[]{chatId}, limit);
+    }
+
+    /**
+     * Загружает сообщения чата, предшествующие указанному ключу.
+     *
+     * @param chatId ID чата
+     * @param beforeKey push ID, до которого нужно загрузить сообщения (не включительно)
+     * @param limit максимальное количество сообщений
+     * @return сообщения в хронологическом порядке
+     */
+    public List<Message> loadMessagesBefore(String chatId, String beforeKey, int limit) {
+        return queryMessages("chat_id = ? AND id < ?", new String[]{chatId, beforeKey}, limit);
+    }
+
+    /**
+     * Читает тексты сообщений, выгруженные из памяти открытого чата.
+     *
+     * @param chatId ID чата
+     * @param messageIds ID сообщений (не больше нескольких сотен)
+     * @return тексты по ID сообщения
+     */
+    public Map<String, String> loadMessageTexts(String chatId, Collection<String> messageIds) {
+        Map<String, String> texts = new HashMap<>();
+        if (messageIds.isEmpty()) {
+            return texts;
+        }
+        List<String> ids = new ArrayList<>(messageIds);
+        for (int from = 0; from < ids.size(); from += MAX_IN_ARGS) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_ARGS));
+            String[] args = new String[chunk.size() + 1];
+            args[0] = chatId;
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+            }
+            try (Cursor cursor = getReadableDatabase().query(TABLE_MESSAGES,
+                    new String[]{"id", "text"},
+                    "chat_id = ? AND id IN (" + placeholders(chunk.size()) + ")", args, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    texts.put(cursor.getString(0), cursor.getString(1));
+                }
+            }
+        }
+        return texts;
+    }
+
+    private List<Message> queryMessages(String selection, String[] args, int limit) {
+        List<Message> messages = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MESSAGES,
+                new String[]{"id", "text", "sender_id", "timestamp"},
+                selection, args, null, null, "id DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                messages.add(new Message(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getLong(3)));
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * Сохраняет сообщения чата, заменяя уже существующие с теми же ключами.
+     *
+     * @param chatId ID чата
+     * @param messages сообщения для сохранения
+     */
+    public void saveMessages(String chatId, List<Message> messages) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Message message : messages) {
+                values.clear();
+                values.put("chat_id", chatId);
+                values.put("id", message.getId());
+                values.put("text", message.getText());
+                values.put("sender_id", message.getSenderId());
+                values.put("timestamp", message.getTimestamp());
+                db.insertWithOnConflict(TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Загружает сохранённый список чатов.
+     *
+     * @return чаты пользователя
+     */
+    public List<Chat> loadChats() {
+        List<Chat> chats = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CHATS,
+                new String[]{"id", "other_user_id", "last_message", "last_message_timestamp",
+                        "unread_count", "last_message_sender_id", "peer_last_read_timestamp"},
+                null, null, null, null, "last_message_timestamp DESC")) {
+            while (cursor.moveToNext()) {
+                Chat chat = new Chat(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getLong(3));
+                chat.setUnreadCount(cursor.getInt(4));
+                chat.setLastMessageSenderId(cursor.getString(5));
+                chat.setPeerLastReadTimestamp(cursor.getLong(6));
+                chats.add(chat);
+            }
+        }
+        return chats;
+    }
+
+    /**
+     * Сохраняет или обновляет один чат.
+     *
+     * @param chat чат для сохранения
+     */
+    public void saveChat(Chat chat) {
+        getWritableDatabase().insertWithOnConflict(TABLE_CHATS, null, toValues(chat), SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Заменяет сохранённый список чатов актуальным одной транзакцией:
+     * чаты, которых больше нет на сервере, удаляются из таблицы.
+     *
+     * @param chats полный список чатов пользователя
+     */
+    public void replaceChats(List<Chat> chats) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_CHATS, null, null);
+            for (Chat chat : chats) {
+                db.insertWithOnConflict(TABLE_CHATS, null, toValues(chat), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Удаляет чат из сохранённого списка.
+     *
+     * @param chatId ID чата
+     */
+    public void deleteChat(String chatId) {
+        getWritableDatabase().delete(TABLE_CHATS, "id = ?", new String[]{chatId});
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    private static ContentValues toValues(Chat chat) {
+        ContentValues values = new ContentValues();
+        values.put("id", chat.getId());
+        values.put("other_user_id", chat.getOtherUserId());
+        values.put("last_message", chat.getLastMessage());
+        values.put("last_message_timestamp", chat.getLastMessageTimestamp());
+        values.put("unread_count", chat.getUnreadCount());
+        values.put("last_message_sender_id", chat.getLastMessageSenderId());
+        values.put("peer_last_read_timestamp", chat.getPeerLastReadTimestamp());
+        return values;
+    }
+
+    /**
+     * Добавляет исходящее сообщение в очередь отправки.
+     *
+     * @param entry сообщение с адресом чата
+     */
+    public void enqueueOutgoing(MessageOutbox.Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put("id", entry.getMessage().getId());
+        values.put("chat_id", entry.getChatId());
+        values.put("other_user_id", entry.getOtherUserId());
+        values.put("text", entry.getMessage().getText());
+        values.put("sender_id", entry.getMessage().getSenderId());
+        values.put("timestamp", entry.getMessage().getTimestamp());
+        getWritableDatabase().insertWithOnConflict(TABLE_OUTBOX, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Загружает очередь исходящих сообщений.
+     *
+     * @param chatId ID чата или null, чтобы загрузить очередь всех чатов
+     * @return сообщения в порядке отправки
+     */
+    public List<MessageOutbox.Entry> loadOutgoing(String chatId) {
+        List<MessageOutbox.Entry> entries = new ArrayList<>();
+        String selection = chatId != null ? "chat_id = ?" : null;
+        String[] args = chatId != null ? new String[]{chatId} : null;
+        try (Cursor cursor = getReadableDatabase().query(TABLE_OUTBOX,
+                new String[]{"id", "chat_id", "other_user_id", "text", "sender_id", "timestamp", "handed_off"},
+                selection, args, null, null, "id ASC")) {
+            while (cursor.moveToNext()) {
+                Message message = new Message(cursor.getString(0), cursor.getString(3),
+                        cursor.getString(4), cursor.getLong(5));
+                message.setPending(true);
+                entries.add(new MessageOutbox.Entry(cursor.getString(1), cursor.getString(2), message,
+                        cursor.getInt(6) != 0));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Отмечает, что запись сообщений передана в Firebase. Такие записи Firebase
+     * хранит в своём дисковом кэше и повторяет сам после перезапуска.
+     *
+     * @param messageIds ID сообщений
+     * @param handedOff true после передачи, false если сервер отклонил запись
+     */
+    public void setOutgoingHandedOff(List<String> messageIds, boolean handedOff) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put("handed_off", handedOff ? 1 : 0);
+        db.beginTransaction();
+        try {
+            for (String messageId : messageIds) {
+                db.update(TABLE_OUTBOX, values, "id = ?", new String[]{messageId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Загружает сохранённые профили пользователей одним запросом.
+     *
+     * @param uids ID пользователей
+     * @return найденные профили (отсутствующих в базе пользователей в списке нет)
+     */
+    public List<UserProfile> loadProfiles(Collection<String> uids) {
+        List<UserProfile> profiles = new ArrayList<>();
+        if (uids.isEmpty()) {
+            return profiles;
+        }
+        List<String> ids = new ArrayList<>(uids);
+        for (int from = 0; from < ids.size(); from += MAX_IN_ARGS) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_ARGS));
+            try (Cursor cursor = getReadableDatabase().query(TABLE_PROFILES,
+                    new String[]{"uid", "display_name", "email", "fetched_at"},
+                    "uid IN (" + placeholders(chunk.size()) + ")", chunk.toArray(new String[0]), null, null, null)) {
+                while (cursor.moveToNext()) {
+                    profiles.add(new UserProfile(cursor.getString(0), cursor.getString(1),
+                            cursor.getString(2), cursor.getLong(3)));
+                }
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Сохраняет или обновляет профиль пользователя.
+     *
+     * @param profile профиль
+     */
+    public void saveProfile(UserProfile profile) {
+        ContentValues values = new ContentValues();
+        values.put("uid", profile.getUid());
+        values.put("display_name", profile.getDisplayName());
+        values.put("email", profile.getEmail());
+        values.put("fetched_at", profile.getFetchedAt());
+        getWritableDatabase().insertWithOnConflict(TABLE_PROFILES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Удаляет из очереди отправленные сообщения.
+     *
+     * @param messageIds ID отправленных сообщений
+     */
+    public void removeOutgoing(List<String> messageIds) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String messageId : messageIds) {
+                db.delete(TABLE_OUTBOX, "id = ?", new String[]{messageId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
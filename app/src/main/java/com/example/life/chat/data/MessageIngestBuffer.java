@@ -0,0 +1,67 @@
+package com.example.life.chat.data;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Буфер входящих сообщений чата.
+ * Собирает сообщения (или их необработанные снимки), пришедшие из onChildAdded,
+ * и отдаёт их получателю одной пачкой не чаще одного раза за кадр (по сигналу Choreographer).
+ * Все методы должны вызываться на главном потоке.
+ *
+ * @param <T> тип элемента буфера
+ */
+public class MessageIngestBuffer<T> implements Choreographer.FrameCallback {
+
+    /**
+     * Получатель накопленной пачки сообщений.
+     */
+    public interface Sink<T> {
+        void onBatch(List<T> batch);
+    }
+
+    private final Sink<T> sink;
+    private final List<T> pending = new ArrayList<>();
+    private boolean frameScheduled = false;
+
+    public MessageIngestBuffer(Sink<T> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Добавляет сообщение в буфер и планирует сброс на следующий кадр.
+     *
+     * @param item входящее сообщение
+     */
+    public void add(T item) {
+        pending.add(item);
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Отменяет запланированный сброс и очищает буфер.
+     */
+    public void cancel() {
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<T> batch = new ArrayList<>(pending);
+        pending.clear();
+        sink.onBatch(batch);
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.life.chat.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.life.chat.model.ChatMapper;
+import com.example.life.chat.model.Message;
+import com.example.life.chat.model.MessageMapper;
+import com.example.life.core.FirebaseListenerRegistry;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Очередь исходящих сообщений.
+ * Сообщение сначала сохраняется на диск, а затем отправляется в Firebase вместе с другими
+ * сообщениями, набранными за короткий интервал, одним многопутевым updateChildren.
+ * Если связи нет или запись не удалась, сообщения остаются в очереди и повторно
+ * отправляются при восстановлении соединения (по .info/connected).
+ * Если процесс завершился, пока переданная в Firebase запись ждала подтверждения,
+ * после перезапуска сообщение сначала ищется в базе: запись могла дойти до сервера
+ * или сохраниться в дисковом кэше Firebase, который повторит её сам. Заново (вместе с
+ * приращением счётчика непрочитанных) отправляется только потерянное сообщение.
+ * Если сервер отклоняет пачку окончательно (правила базы), сообщения отправляются
+ * по одному, и отклонённое сообщение удаляется из очереди, чтобы не блокировать остальные.
+ * Все методы вызываются на главном потоке.
+ */
+public class MessageOutbox {
+
+    private static final String TAG = "MessageOutbox";
+
+    /** Сколько ждать следующих сообщений перед отправкой пачки. */
+    private static final long FLUSH_DELAY_MS = 300;
+
+    /**
+     * Исходящее сообщение вместе с адресом чата.
+     */
+    public static class Entry {
+        private final String chatId;
+        private final String otherUserId;
+        private final Message message;
+        private final boolean handedOff;
+
+        public Entry(String chatId, String otherUserId, Message message) {
+            this(chatId, otherUserId, message, false);
+        }
+
+        public Entry(String chatId, String otherUserId, Message message, boolean handedOff) {
+            this.chatId = chatId;
+            this.otherUserId = otherUserId;
+            this.message = message;
+            this.handedOff = handedOff;
+        }
+
+        public String getChatId() {
+            return chatId;
+        }
+
+        public String getOtherUserId() {
+            return otherUserId;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        /** @return true, если запись уже передавалась в Firebase в прошлом запуске */
+        public boolean isHandedOff() {
+            return handedOff;
+        }
+    }
+
+    /**
+     * Получатель уведомлений о подтверждённых сервером сообщениях.
+     */
+    public interface Listener {
+        void onMessagesSent(String chatId, List<String> messageIds);
+
+        /** Сообщения отклонены сервером и удалены из очереди. */
+        void onMessagesRejected(String chatId, List<String> messageIds);
+    }
+
+    private static MessageOutbox instance;
+
+    private final LocalChatDatabase localDatabase;
+    private final DatabaseReference databaseReference;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Сообщения, запись которых уже передана в Firebase и ждёт подтверждения
+    private final Set<String> inFlightIds = new HashSet<>();
+    private boolean flushScheduled = false;
+
+    /**
+     * Возвращает единственную очередь приложения, при первом вызове
+     * подписывается на состояние соединения.
+     *
+     * @param context любой контекст, используется контекст приложения
+     */
+    public static MessageOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new MessageOutbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MessageOutbox(Context context) {
+        this.localDatabase = LocalChatDatabase.getInstance(context);
+        this.databaseReference = FirebaseDatabase.getInstance().getReference();
+
+        // Подписка живёт всё время работы процесса
+        new FirebaseListenerRegistry(TAG).addValueEventListener(
+                FirebaseDatabase.getInstance().getReference(".info/connected"), new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Boolean connected = snapshot.getValue(Boolean.class);
+                        if (Boolean.TRUE.equals(connected)) {
+                            scheduleFlush(0);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, ".info/connected: onCancelled", error.toException());
+                    }
+                });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Ставит сообщение в очередь: сохраняет на диск и планирует отправку пачки.
+     *
+     * @param entry исходящее сообщение
+     */
+    public void enqueue(Entry entry) {
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            localDatabase.enqueueOutgoing(entry);
+            mainHandler.post(() -> scheduleFlush(FLUSH_DELAY_MS));
+        });
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        mainHandler.postDelayed(() -> {
+            flushScheduled = false;
+            flush();
+        }, delayMs);
+    }
+
+    /**
+     * Отправляет все сообщения очереди, которые ещё не переданы в Firebase,
+     * одним атомарным updateChildren.
+     */
+    private void flush() {
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            List<Entry> entries = localDatabase.loadOutgoing(null);
+            mainHandler.post(() -> send(entries));
+        });
+    }
+
+    private void send(List<Entry> entries) {
+        List<Entry> batch = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (inFlightIds.contains(entry.getMessage().getId())) {
+                continue;
+            }
+            if (entry.isHandedOff()) {
+                resendIfLost(entry);
+            } else {
+                batch.add(entry);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sendBatch(batch);
+        }
+    }
+
+    /**
+     * Проверяет сообщение, переданное в Firebase в прошлом запуске. Чтение видит и
+     * подтверждённые сервером записи, и записи из дискового кэша Firebase, ещё не
+     * отправленные на сервер; иначе запись потеряна и сообщение отправляется заново.
+     */
+    private void resendIfLost(Entry entry) {
+        Message message = entry.getMessage();
+        inFlightIds.add(message.getId());
+        databaseReference.child("messages").child(entry.getChatId()).child(message.getId())
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        inFlightIds.remove(message.getId());
+                        if (snapshot.exists()) {
+                            List<String> ids = Collections.singletonList(message.getId());
+                            LocalChatDatabase.DISK_IO.execute(() -> localDatabase.removeOutgoing(ids));
+                            notifySent(Collections.singletonList(entry));
+                        } else {
+                            sendBatch(Collections.singletonList(
+                                    new Entry(entry.getChatId(), entry.getOtherUserId(), message)));
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        inFlightIds.remove(message.getId());
+                        Log.e(TAG, "Не удалось проверить сообщение " + message.getId(), error.toException());
+                    }
+                });
+    }
+
+    private void sendBatch(List<Entry> batch) {
+        Map<String, Object> updates = new HashMap<>();
+        Map<String, Entry> lastEntryByChat = new LinkedHashMap<>();
+        Map<String, Integer> countByChat = new HashMap<>();
+        List<String> batchIds = new ArrayList<>();
+        for (Entry entry : batch) {
+            Message message = entry.getMessage();
+            updates.put("messages/" + entry.getChatId() + "/" + message.getId(), MessageMapper.toMap(message));
+            lastEntryByChat.put(entry.getChatId(), entry);
+            Integer count = countByChat.get(entry.getChatId());
+            countByChat.put(entry.getChatId(), count != null ? count + 1 : 1);
+            batchIds.add(message.getId());
+        }
+
+        // Сводки user_chats обоих участников обновляются по последнему сообщению каждого чата
+        for (Entry entry : lastEntryByChat.values()) {
+            Message message = entry.getMessage();
+            String mySummary = "user_chats/" + message.getSenderId() + "/" + entry.getOtherUserId() + "/";
+            String otherSummary = "user_chats/" + entry.getOtherUserId() + "/" + message.getSenderId() + "/";
+            ChatMapper.putLastMessage(updates, mySummary, entry.getChatId(), message);
+            ChatMapper.putLastMessage(updates, otherSummary, entry.getChatId(), message);
+            // Чаты, созданные до появления chats/{chatId}, получают список участников при первой отправке
+            ChatMapper.putParticipants(updates, entry.getChatId(), message.getSenderId(), entry.getOtherUserId());
+            updates.put(otherSummary + ChatMapper.FIELD_UNREAD_COUNT,
+                    ServerValue.increment(countByChat.get(entry.getChatId())));
+        }
+
+        inFlightIds.addAll(batchIds);
+        LocalChatDatabase.DISK_IO.execute(() -> localDatabase.setOutgoingHandedOff(batchIds, true));
+        // Вариант с CompletionListener сохраняет код ошибки, по которому отличается отказ правил
+        databaseReference.updateChildren(updates, (error, ref) -> {
+            batchIds.forEach(inFlightIds::remove);
+            if (error == null) {
+                LocalChatDatabase.DISK_IO.execute(() -> localDatabase.removeOutgoing(batchIds));
+                notifySent(batch);
+                return;
+            }
+            LocalChatDatabase.DISK_IO.execute(() -> localDatabase.setOutgoingHandedOff(batchIds, false));
+            Log.e(TAG, "Ошибка отправки пачки сообщений", error.toException());
+            if (error.getCode() != DatabaseError.PERMISSION_DENIED) {
+                // Сообщения остаются в очереди до следующего подключения или отправки
+                return;
+            }
+            if (batch.size() > 1) {
+                // Пачка атомарна: ищем отклонённое сообщение, отправляя по одному
+                for (Entry entry : batch) {
+                    sendBatch(Collections.singletonList(entry));
+                }
+            } else {
+                reject(batch.get(0));
+            }
+        });
+    }
+
+    private void reject(Entry entry) {
+        List<String> ids = Collections.singletonList(entry.getMessage().getId());
+        LocalChatDatabase.DISK_IO.execute(() -> localDatabase.removeOutgoing(ids));
+        for (Listener listener : listeners) {
+            listener.onMessagesRejected(entry.getChatId(), ids);
+        }
+    }
+
+    private void notifySent(List<Entry> batch) {
+        Map<String, List<String>> idsByChat = new HashMap<>();
+        for (Entry entry : batch) {
+            List<String> ids = idsByChat.get(entry.getChatId());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByChat.put(entry.getChatId(), ids);
+            }
+            ids.add(entry.getMessage().getId());
+        }
+        for (Map.Entry<String, List<String>> chatIds : idsByChat.entrySet()) {
+            for (Listener listener : listeners) {
+                listener.onMessagesSent(chatIds.getKey(), chatIds.getValue());
+            }
+        }
+    }
+}
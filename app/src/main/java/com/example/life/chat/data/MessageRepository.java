@@ -0,0 +1,681 @@
+package com.example.life.chat.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.life.chat.model.ChatMapper;
+import com.example.life.chat.model.CompactMessageList;
+import com.example.life.chat.model.CompactMessageStore;
+import com.example.life.chat.model.Message;
+import com.example.life.chat.model.MessageMapper;
+import com.example.life.core.FirebaseListenerRegistry;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Поток сообщений одного чата.
+ * Загружает историю страницами (сначала с диска, затем из Firebase), держит один
+ * слушатель на "хвосте" чата и публикует актуальный список через LiveData.
+ * Живёт дольше представления (хранится во ViewModel), поэтому пересоздание экрана
+ * не приводит к повторной синхронизации. Публичные методы вызываются на главном потоке,
+ * а разбор снимков и список сообщений принадлежат {@link SyncThread#EXECUTOR}.
+ * Отправленные сообщения сразу показываются в списке как ожидающие и уходят
+ * в Firebase через {@link MessageOutbox}.
+ */
+public class MessageRepository implements MessageOutbox.Listener {
+
+    private static final String TAG = "MessageRepository";
+
+    /** Количество сообщений, загружаемых за одну страницу истории. */
+    public static final int PAGE_SIZE = 50;
+
+    /** Сколько текстов можно держать в памяти, прежде чем выгружать дальние. */
+    private static final int MAX_RESIDENT_TEXTS = 2000;
+    /** Сколько сообщений в каждую сторону от видимых сохраняют текст при выгрузке. */
+    private static final int RESIDENT_AROUND = 500;
+    /** В каком диапазоне вокруг видимых сообщений выгруженные тексты читаются обратно. */
+    private static final int RESTORE_AROUND = 100;
+
+    /**
+     * Очередное состояние списка сообщений.
+     */
+    public static class MessageListUpdate {
+        private final CompactMessageList messages;
+        private final boolean appendedAtEnd;
+
+        MessageListUpdate(CompactMessageList messages, boolean appendedAtEnd) {
+            this.messages = messages;
+            this.appendedAtEnd = appendedAtEnd;
+        }
+
+        /** @return неизменяемый список сообщений в хронологическом порядке */
+        public CompactMessageList getMessages() {
+            return messages;
+        }
+
+        /** @return true, если новые сообщения добавлены в конец списка */
+        public boolean isAppendedAtEnd() {
+            return appendedAtEnd;
+        }
+    }
+
+    private final String chatId;
+    private final String currentUserId;
+    private final String otherUserId;
+
+    private final DatabaseReference messagesRef;
+    private final DatabaseReference peerTypingRef;
+    private final LocalChatDatabase localDatabase;
+    private final MessageOutbox outbox;
+    private final SyncPolicy syncPolicy;
+    private final TypingReporter typingReporter;
+    private final FirebaseListenerRegistry listenerRegistry;
+    private final MessageIngestBuffer<DataSnapshot> ingestBuffer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final MutableLiveData<MessageListUpdate> messages = new MutableLiveData<>();
+    private final MutableLiveData<String> errors = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> peerTyping = new MutableLiveData<>(false);
+
+    // Состояние ниже изменяется только в SyncThread.EXECUTOR
+    private final CompactMessageStore messageStore = new CompactMessageStore();
+    // ID отправленных, но ещё не подтверждённых сервером сообщений
+    private final Set<String> pendingIds = new HashSet<>();
+    // ID собственных сообщений, уже показанных в списке, эхо которых ещё не пришло;
+    // только для них входящее сообщение ищется в списке, остальные просто добавляются
+    private final Set<String> unechoedIds = new HashSet<>();
+    // Сообщения из очереди отправки, которые нужно показать после первой страницы
+    private List<Message> queuedMessages = Collections.emptyList();
+
+    // Границы загруженного окна истории (push ID упорядочены по времени создания)
+    private String oldestKey;
+    private String newestKey;
+    private boolean hasMoreOlder = true;
+    private boolean loadingOlder = false;
+    private long lastMarkedReadTimestamp = 0;
+    private int viewportFirst = -1;
+    private int viewportLast = -1;
+    private boolean restoringTexts = false;
+
+    private boolean started = false;
+    private volatile boolean closed = false;
+    // Чат показан пользователю: входящие сообщения сразу считаются прочитанными
+    private volatile boolean visible = false;
+
+    public MessageRepository(Context context, String chatId, String currentUserId, String otherUserId) {
+        this.chatId = chatId;
+        this.currentUserId = currentUserId;
+        this.otherUserId = otherUserId;
+        this.messagesRef = FirebaseDatabase.getInstance().getReference().child("messages").child(chatId);
+        this.localDatabase = LocalChatDatabase.getInstance(context);
+        this.outbox = MessageOutbox.getInstance(context);
+        this.syncPolicy = SyncPolicy.getInstance(context);
+        DatabaseReference typingRef = FirebaseDatabase.getInstance().getReference().child("typing").child(chatId);
+        this.typingReporter = new TypingReporter(typingRef.child(currentUserId));
+        this.peerTypingRef = typingRef.child(otherUserId);
+        this.listenerRegistry = new FirebaseListenerRegistry(TAG + ":" + chatId);
+        this.ingestBuffer = new MessageIngestBuffer<>(batch -> SyncThread.EXECUTOR.execute(() -> onSnapshotsBatch(batch)));
+    }
+
+    /** @return актуальный список сообщений */
+    public LiveData<MessageListUpdate> getMessages() {
+        return messages;
+    }
+
+    /** @return текст последней ошибки для показа пользователю (null после показа) */
+    public LiveData<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Сбрасывает последнюю ошибку после того, как она была показана.
+     */
+    public void onErrorShown() {
+        errors.setValue(null);
+    }
+
+    /**
+     * Запускает загрузку сообщений. Повторные вызовы игнорируются.
+     * Сначала читаются сообщения с диска; если они есть, из Firebase запрашиваются только более новые.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        syncPolicy.onChatOpened(chatId);
+        listenForPeerTyping();
+        outbox.addListener(this);
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            List<Message> cached = localDatabase.loadLatestMessages(chatId, PAGE_SIZE);
+            List<Message> queued = new ArrayList<>();
+            for (MessageOutbox.Entry entry : localDatabase.loadOutgoing(chatId)) {
+                queued.add(entry.getMessage());
+            }
+            SyncThread.EXECUTOR.execute(() -> {
+                queuedMessages = queued;
+                onCachedMessagesLoaded(cached);
+            });
+        });
+    }
+
+    /** @return true, пока собеседник набирает сообщение */
+    public LiveData<Boolean> getPeerTyping() {
+        return peerTyping;
+    }
+
+    /**
+     * Передаёт изменение поля ввода для признака набора текста.
+     *
+     * @param text текущий текст поля ввода
+     */
+    public void onInputChanged(String text) {
+        typingReporter.onInputChanged(text.trim().isEmpty());
+    }
+
+    /**
+     * Сообщает, виден ли чат пользователю. Пока чат виден, счётчик непрочитанных
+     * сбрасывается, а собеседник получает отметку о прочтении.
+     *
+     * @param visible true, если экран чата открыт и активен
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        SyncThread.EXECUTOR.execute(this::markRead);
+    }
+
+    /**
+     * Отключает все слушатели. После вызова репозиторий больше не используется.
+     */
+    public void close() {
+        closed = true;
+        typingReporter.stop();
+        outbox.removeListener(this);
+        listenerRegistry.clear();
+        ingestBuffer.cancel();
+    }
+
+    private void onCachedMessagesLoaded(List<Message> cached) {
+        if (closed) {
+            return;
+        }
+        if (cached.isEmpty()) {
+            loadLatestPageFromNetwork();
+            return;
+        }
+        oldestKey = cached.get(0).getId();
+        newestKey = cached.get(cached.size() - 1).getId();
+        messageStore.addAll(cached);
+        appendQueuedMessages();
+        publish(true);
+        listenForNewMessages();
+    }
+
+    /**
+     * Загружает последнюю страницу сообщений из Firebase и сохраняет её на диск.
+     * После получения страницы подключает слушатель только к "хвосту" чата.
+     */
+    private void loadLatestPageFromNetwork() {
+        messagesRef.orderByKey().limitToLast(PAGE_SIZE).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                SyncThread.EXECUTOR.execute(() -> onLatestPageLoaded(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                errors.setValue("Ошибка загрузки сообщений: " + error.getMessage());
+                Log.e(TAG, "Ошибка загрузки сообщений", error.toException());
+            }
+        });
+    }
+
+    private void onLatestPageLoaded(DataSnapshot snapshot) {
+        if (closed) {
+            return;
+        }
+        List<Message> page = readPage(snapshot);
+        hasMoreOlder = snapshot.getChildrenCount() >= PAGE_SIZE;
+        saveMessages(page);
+        messageStore.addAll(page);
+        appendQueuedMessages();
+        publish(true);
+        listenForNewMessages();
+    }
+
+    /**
+     * Подключает слушатель к сообщениям, появившимся после последнего загруженного.
+     * Снимки новых сообщений накапливаются в буфере и не чаще раза за кадр
+     * передаются на разбор в поток синхронизации.
+     */
+    private void listenForNewMessages() {
+        Query tailQuery = newestKey == null
+                ? messagesRef.orderByKey()
+                : messagesRef.orderByKey().startAfter(newestKey);
+        // Реестр слушателей и буфер используются только на главном потоке
+        mainHandler.post(() -> {
+            if (!closed) {
+                listenForNewMessages(tailQuery);
+            }
+        });
+    }
+
+    private void listenForNewMessages(Query tailQuery) {
+        listenerRegistry.addChildEventListener(tailQuery, new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                ingestBuffer.add(snapshot);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {}
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {}
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                errors.setValue("Ошибка загрузки сообщений: " + error.getMessage());
+                Log.e(TAG, "Ошибка загрузки сообщений", error.toException());
+            }
+        });
+    }
+
+    /**
+     * Разбирает и применяет пачку новых сообщений, накопленных за кадр.
+     *
+     * @param snapshots снимки новых сообщений в порядке поступления
+     */
+    private void onSnapshotsBatch(List<DataSnapshot> snapshots) {
+        if (closed) {
+            return;
+        }
+        List<Message> batch = new ArrayList<>(snapshots.size());
+        for (DataSnapshot snapshot : snapshots) {
+            Message message = MessageMapper.fromMap(snapshot.getKey(), snapshot.getValue());
+            if (message != null) {
+                newestKey = snapshot.getKey();
+                if (oldestKey == null) {
+                    oldestKey = newestKey;
+                }
+                batch.add(message);
+            }
+        }
+        saveMessages(batch);
+        for (Message message : batch) {
+            // Эхо собственного сообщения заменяет локальную копию, а не дублирует её,
+            // даже если подтверждение отправки пришло раньше эха
+            if (!unechoedIds.remove(message.getId()) || !replaceMessage(message)) {
+                messageStore.add(message);
+            }
+        }
+        publish(true);
+    }
+
+    /**
+     * Добавляет в конец списка неотправленные сообщения из очереди (после перезапуска).
+     * Сообщения, которые уже есть в списке (сервер принял их до перезапуска), пропускаются.
+     */
+    private void appendQueuedMessages() {
+        for (Message message : queuedMessages) {
+            if (messageStore.lastIndexOf(message.getId()) < 0 && pendingIds.add(message.getId())) {
+                unechoedIds.add(message.getId());
+                messageStore.add(message);
+            }
+        }
+        queuedMessages = Collections.emptyList();
+    }
+
+    /**
+     * Заменяет сообщение с тем же ID, сохраняя признак ожидания подтверждения.
+     * Поиск идёт с конца: собственные сообщения почти всегда последние.
+     *
+     * @return true, если сообщение найдено
+     */
+    private boolean replaceMessage(Message message) {
+        int position = messageStore.lastIndexOf(message.getId());
+        if (position < 0) {
+            return false;
+        }
+        message.setPending(pendingIds.contains(message.getId()));
+        messageStore.set(position, message);
+        return true;
+    }
+
+    @Override
+    public void onMessagesSent(String sentChatId, List<String> messageIds) {
+        if (closed || !chatId.equals(sentChatId)) {
+            return;
+        }
+        SyncThread.EXECUTOR.execute(() -> confirmMessages(messageIds));
+    }
+
+    @Override
+    public void onMessagesRejected(String rejectedChatId, List<String> messageIds) {
+        if (closed || !chatId.equals(rejectedChatId)) {
+            return;
+        }
+        SyncThread.EXECUTOR.execute(() -> dropMessages(messageIds));
+    }
+
+    private void dropMessages(List<String> messageIds) {
+        boolean changed = false;
+        for (String messageId : messageIds) {
+            if (!pendingIds.remove(messageId)) {
+                continue;
+            }
+            unechoedIds.remove(messageId);
+            int position = messageStore.lastIndexOf(messageId);
+            if (position >= 0) {
+                messageStore.remove(position);
+                changed = true;
+            }
+        }
+        if (changed) {
+            publish(false);
+            mainHandler.post(() -> errors.setValue("Сообщение отклонено сервером и не отправлено"));
+        }
+    }
+
+    private void confirmMessages(List<String> messageIds) {
+        boolean changed = false;
+        for (String messageId : messageIds) {
+            if (!pendingIds.remove(messageId)) {
+                continue;
+            }
+            int position = messageStore.lastIndexOf(messageId);
+            if (position >= 0) {
+                messageStore.setPending(position, false);
+                changed = true;
+            }
+        }
+        if (changed) {
+            publish(false);
+        }
+    }
+
+    /**
+     * Загружает предыдущую страницу истории (сообщения старше самого раннего загруженного).
+     * Сначала страница ищется в локальной базе, и только если там ничего нет — в Firebase.
+     */
+    public void loadOlderMessages() {
+        SyncThread.EXECUTOR.execute(this::loadOlderPage);
+    }
+
+    private void loadOlderPage() {
+        if (loadingOlder || !hasMoreOlder || oldestKey == null || closed) {
+            return;
+        }
+        loadingOlder = true;
+        String beforeKey = oldestKey;
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            List<Message> cached = localDatabase.loadMessagesBefore(chatId, beforeKey, PAGE_SIZE);
+            SyncThread.EXECUTOR.execute(() -> {
+                if (closed) {
+                    loadingOlder = false;
+                    return;
+                }
+                if (cached.isEmpty()) {
+                    loadOlderPageFromNetwork();
+                } else {
+                    loadingOlder = false;
+                    oldestKey = cached.get(0).getId();
+                    prependMessages(cached);
+                }
+            });
+        });
+    }
+
+    /**
+     * Загружает предыдущую страницу истории из Firebase и сохраняет её на диск.
+     */
+    private void loadOlderPageFromNetwork() {
+        messagesRef.orderByKey().endBefore(oldestKey).limitToLast(PAGE_SIZE).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                SyncThread.EXECUTOR.execute(() -> onOlderPageLoaded(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                SyncThread.EXECUTOR.execute(() -> loadingOlder = false);
+                Log.e(TAG, "Ошибка загрузки истории сообщений", error.toException());
+            }
+        });
+    }
+
+    private void onOlderPageLoaded(DataSnapshot snapshot) {
+        loadingOlder = false;
+        if (closed) {
+            return;
+        }
+        String previousOldestKey = oldestKey;
+        oldestKey = null;
+        List<Message> page = readPage(snapshot);
+        if (oldestKey == null) {
+            oldestKey = previousOldestKey;
+        }
+        hasMoreOlder = snapshot.getChildrenCount() >= PAGE_SIZE;
+        saveMessages(page);
+        prependMessages(page);
+    }
+
+    private void prependMessages(List<Message> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        messageStore.addAllAtStart(page);
+        // Видимые строки сдвинулись вместе с добавленной страницей
+        if (viewportFirst >= 0) {
+            viewportFirst += page.size();
+            viewportLast += page.size();
+        }
+        publish(false);
+    }
+
+    /**
+     * Отправляет новое сообщение.
+     * Сообщение сразу появляется в списке как ожидающее подтверждения и ставится
+     * в {@link MessageOutbox}, который запишет его в Firebase вместе со сводками чата.
+     *
+     * @param text текст сообщения для отправки
+     * @return false, если текст длиннее {@link MessageMapper#MAX_TEXT_LENGTH}
+     *         или не удалось создать ID сообщения
+     */
+    public boolean sendMessage(String text) {
+        if (text.length() > MessageMapper.MAX_TEXT_LENGTH) {
+            return false;
+        }
+        String messageId = messagesRef.push().getKey();
+        if (messageId == null) {
+            return false;
+        }
+
+        typingReporter.stop();
+        Message message = new Message(messageId, text, currentUserId, System.currentTimeMillis());
+        message.setPending(true);
+        SyncThread.EXECUTOR.execute(() -> {
+            pendingIds.add(messageId);
+            unechoedIds.add(messageId);
+            messageStore.add(message);
+            publish(true);
+        });
+
+        outbox.enqueue(new MessageOutbox.Entry(chatId, otherUserId, message));
+        return true;
+    }
+
+    private void listenForPeerTyping() {
+        listenerRegistry.addValueEventListener(peerTypingRef, new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                peerTyping.setValue(Boolean.TRUE.equals(snapshot.getValue()));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "typing: onCancelled for chat=" + chatId, error.toException());
+            }
+        });
+    }
+
+    private void saveMessages(List<Message> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        LocalChatDatabase.DISK_IO.execute(() -> localDatabase.saveMessages(chatId, page));
+    }
+
+    /**
+     * Сообщает, какие сообщения сейчас на экране. Если в памяти слишком много текстов,
+     * тексты далеко от видимой области выгружаются (они уже сохранены в локальной базе),
+     * а выгруженные тексты рядом с ней читаются обратно.
+     *
+     * @param first позиция первого видимого сообщения
+     * @param last позиция последнего видимого сообщения
+     */
+    public void onViewportChanged(int first, int last) {
+        SyncThread.EXECUTOR.execute(() -> {
+            viewportFirst = first;
+            viewportLast = last;
+            updateResidentTexts();
+        });
+    }
+
+    private void updateResidentTexts() {
+        if (closed || viewportFirst < 0) {
+            return;
+        }
+        if (messageStore.getResidentTextCount() > MAX_RESIDENT_TEXTS) {
+            messageStore.spillTexts(viewportFirst - RESIDENT_AROUND, viewportLast + RESIDENT_AROUND);
+        }
+        if (restoringTexts) {
+            return;
+        }
+        List<String> spilledIds = messageStore.getSpilledIds(viewportFirst - RESTORE_AROUND, viewportLast + RESTORE_AROUND);
+        if (spilledIds.isEmpty()) {
+            return;
+        }
+        restoringTexts = true;
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            Map<String, String> texts = localDatabase.loadMessageTexts(chatId, spilledIds);
+            SyncThread.EXECUTOR.execute(() -> {
+                restoringTexts = false;
+                if (closed || texts.isEmpty()) {
+                    return;
+                }
+                messageStore.restoreTexts(texts);
+                publish(false);
+                // Пока читали, экран мог уйти дальше
+                updateResidentTexts();
+            });
+        });
+    }
+
+    /**
+     * Передаёт неизменяемый снимок списка на главный поток.
+     */
+    private void publish(boolean appendedAtEnd) {
+        MessageListUpdate update = new MessageListUpdate(messageStore.snapshot(), appendedAtEnd);
+        mainHandler.post(() -> {
+            if (!closed) {
+                messages.setValue(update);
+            }
+        });
+        if (appendedAtEnd) {
+            markRead();
+        }
+    }
+
+    /**
+     * Отмечает прочитанным последнее входящее сообщение, если чат виден.
+     * Запись выполняется только когда появилось новое входящее сообщение. Счётчик
+     * непрочитанных сбрасывается транзакцией над своей сводкой: приращение от сообщения,
+     * пришедшего одновременно с отметкой, не затирается.
+     */
+    private void markRead() {
+        if (!visible || closed) {
+            return;
+        }
+        long newestIncoming = 0;
+        for (int i = messageStore.size() - 1; i >= 0; i--) {
+            if (!currentUserId.equals(messageStore.getSenderId(i))) {
+                newestIncoming = messageStore.getTimestamp(i);
+                break;
+            }
+        }
+        if (newestIncoming <= lastMarkedReadTimestamp) {
+            return;
+        }
+        lastMarkedReadTimestamp = newestIncoming;
+        long readTimestamp = newestIncoming;
+        DatabaseReference root = messagesRef.getRoot();
+        root.child("user_chats").child(currentUserId).child(otherUserId).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                currentData.setValue(ChatMapper.applyReadMarker(currentData.getValue(), currentUserId, readTimestamp));
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot currentData) {
+                if (error != null) {
+                    Log.e(TAG, "Ошибка отметки о прочтении", error.toException());
+                }
+            }
+        });
+        Map<String, Object> updates = new HashMap<>();
+        ChatMapper.putPeerReadMarker(updates, currentUserId, otherUserId, readTimestamp);
+        root.updateChildren(updates)
+                .addOnFailureListener(e -> Log.e(TAG, "Ошибка отметки о прочтении", e));
+    }
+
+    /**
+     * Разбирает страницу сообщений и обновляет границы загруженного окна.
+     *
+     * @param snapshot снимок страницы, упорядоченной по ключу
+     * @return сообщения страницы в хронологическом порядке
+     */
+    private List<Message> readPage(DataSnapshot snapshot) {
+        List<Message> page = new ArrayList<>();
+        for (DataSnapshot child : snapshot.getChildren()) {
+            Message message = MessageMapper.fromMap(child.getKey(), child.getValue());
+            if (message != null) {
+                if (oldestKey == null) {
+                    oldestKey = child.getKey();
+                }
+                if (newestKey == null || child.getKey().compareTo(newestKey) > 0) {
+                    newestKey = child.getKey();
+                }
+                page.add(message);
+            }
+        }
+        return page;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.life.chat.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+
+import com.example.life.chat.model.UserPresence;
+import com.example.life.core.FirebaseListenerRegistry;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Присутствие пользователей в сети (status/{uid}).
+ * Собственный статус ставится при каждом подключении (по .info/connected), а переход
+ * в офлайн с временем последнего визита заранее регистрируется через onDisconnect,
+ * поэтому срабатывает и при обрыве связи.
+ * Статус другого пользователя отдаётся одной общей LiveData на uid: слушатель Firebase
+ * подключается, пока у неё есть активные наблюдатели, и только один на пользователя.
+ * Все методы вызываются на главном потоке.
+ */
+public class PresenceRepository {
+
+    private static final String TAG = "PresenceRepository";
+
+    private static PresenceRepository instance;
+
+    private final DatabaseReference statusRef = FirebaseDatabase.getInstance().getReference().child("status");
+    private final Map<String, PresenceLiveData> presences = new HashMap<>();
+
+    private FirebaseListenerRegistry connectionRegistry;
+    private String trackedUserId;
+    private boolean connected = false;
+    private boolean foreground = false;
+
+    public static PresenceRepository getInstance() {
+        if (instance == null) {
+            instance = new PresenceRepository();
+        }
+        return instance;
+    }
+
+    private PresenceRepository() {
+    }
+
+    /**
+     * Начинает публиковать статус пользователя. Повторные вызовы для того же
+     * пользователя ничего не делают.
+     *
+     * @param userId ID текущего пользователя
+     */
+    public void start(String userId) {
+        if (userId.equals(trackedUserId)) {
+            return;
+        }
+        if (connectionRegistry != null) {
+            connectionRegistry.clear();
+        }
+        trackedUserId = userId;
+        connectionRegistry = new FirebaseListenerRegistry(TAG);
+        connectionRegistry.addValueEventListener(
+                FirebaseDatabase.getInstance().getReference(".info/connected"), new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        connected = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+                        if (connected) {
+                            statusRef.child(userId).onDisconnect()
+                                    .setValue(UserPresence.toMap(false, ServerValue.TIMESTAMP))
+                                    .addOnSuccessListener(aVoid -> writeOwnStatus());
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, ".info/connected: onCancelled", error.toException());
+                    }
+                });
+    }
+
+    /**
+     * Сообщает, открыто ли приложение. В фоне пользователь показывается не в сети.
+     *
+     * @param foreground true, если экран приложения виден
+     */
+    public void setForeground(boolean foreground) {
+        if (this.foreground == foreground) {
+            return;
+        }
+        this.foreground = foreground;
+        writeOwnStatus();
+    }
+
+    /**
+     * @param userId ID пользователя
+     * @return общий поток статуса пользователя
+     */
+    public LiveData<UserPresence> observe(String userId) {
+        PresenceLiveData presence = presences.get(userId);
+        if (presence == null) {
+            presence = new PresenceLiveData(statusRef.child(userId));
+            presences.put(userId, presence);
+        }
+        return presence;
+    }
+
+    private void writeOwnStatus() {
+        if (trackedUserId == null || !connected) {
+            return;
+        }
+        statusRef.child(trackedUserId).setValue(UserPresence.toMap(foreground, ServerValue.TIMESTAMP))
+                .addOnFailureListener(e -> Log.e(TAG, "Ошибка записи статуса", e));
+    }
+
+    /**
+     * Статус одного пользователя, слушатель подключён только пока есть наблюдатели.
+     */
+    private static class PresenceLiveData extends LiveData<UserPresence> implements ValueEventListener {
+        private final DatabaseReference ref;
+        private final FirebaseListenerRegistry registry;
+
+        PresenceLiveData(DatabaseReference ref) {
+            super(UserPresence.UNKNOWN);
+            this.ref = ref;
+            this.registry = new FirebaseListenerRegistry(TAG + ":" + ref.getKey());
+        }
+
+        @Override
+        protected void onActive() {
+            registry.addValueEventListener(ref, this);
+        }
+
+        @Override
+        protected void onInactive() {
+            registry.clear();
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            setValue(UserPresence.fromMap(snapshot.getValue()));
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            Log.e(TAG, "presence: onCancelled for " + ref.getKey(), error.toException());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.life.chat.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.life.chat.model.UserProfile;
+import com.example.life.chat.model.UserProfileMapper;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Кэш профилей пользователей для показа имён вместо ID.
+ * Запросы, сделанные за один проход главного потока (например, при привязке всех
+ * видимых строк списка), собираются в пачку: сначала пачка одним запросом читается
+ * с диска, и только отсутствующие или устаревшие профили загружаются из users/{uid}.
+ * RTDB не умеет читать несколько ключей одним запросом, поэтому каждый профиль
+ * читается отдельно, но одновременно выполняется не больше MAX_IN_FLIGHT_FETCHES
+ * чтений, остальные ждут в очереди.
+ * Повторные запросы того же uid, пока он загружается, не порождают новых чтений.
+ * В памяти профили хранятся в LRU, устаревшие по TTL показываются до получения свежих.
+ * Все методы вызываются на главном потоке.
+ */
+public class ProfileCache {
+
+    private static final String TAG = "ProfileCache";
+
+    private static final int MEMORY_CACHE_SIZE = 256;
+    /** Через сколько профиль считается устаревшим и перезапрашивается. */
+    private static final long PROFILE_TTL_MS = 24 * 60 * 60 * 1000L;
+    /** Сколько чтений users/{uid} может выполняться одновременно. */
+    private static final int MAX_IN_FLIGHT_FETCHES = 8;
+
+    /**
+     * Получатель уведомлений о загруженных профилях.
+     */
+    public interface Listener {
+        void onProfilesUpdated(Set<String> uids);
+    }
+
+    private static ProfileCache instance;
+
+    private final LocalChatDatabase localDatabase;
+    private final DatabaseReference usersRef;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, UserProfile> memoryCache = new LruCache<>(MEMORY_CACHE_SIZE);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // uid, ожидающие следующей пачки, и uid, которые уже загружаются
+    private final Set<String> queuedUids = new LinkedHashSet<>();
+    private final Set<String> loadingUids = new HashSet<>();
+    private boolean flushScheduled = false;
+    // uid, ожидающие чтения из сети, и число чтений, которые уже выполняются
+    private final Queue<String> pendingFetches = new ArrayDeque<>();
+    private int fetchesInFlight = 0;
+
+    public static ProfileCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProfileCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ProfileCache(Context context) {
+        this.localDatabase = LocalChatDatabase.getInstance(context);
+        this.usersRef = FirebaseDatabase.getInstance().getReference().child("users");
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Возвращает профиль из памяти и при необходимости ставит его в очередь загрузки.
+     * Когда профиль будет загружен, слушатели получат его uid.
+     *
+     * @param uid ID пользователя
+     * @return профиль или null, если его ещё нет в памяти
+     */
+    @Nullable
+    public UserProfile get(String uid) {
+        UserProfile profile = memoryCache.get(uid);
+        if (profile == null || profile.isExpired(System.currentTimeMillis(), PROFILE_TTL_MS)) {
+            request(uid);
+        }
+        return profile;
+    }
+
+    /**
+     * @param uid ID пользователя
+     * @return имя пользователя, если профиль уже загружен, иначе сам uid
+     */
+    public String getDisplayName(String uid) {
+        UserProfile profile = get(uid);
+        return profile != null ? profile.getDisplayName() : uid;
+    }
+
+    private void request(String uid) {
+        if (loadingUids.contains(uid) || !queuedUids.add(uid)) {
+            return;
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.post(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        List<String> batch = new ArrayList<>(queuedUids);
+        queuedUids.clear();
+        loadingUids.addAll(batch);
+        LocalChatDatabase.DISK_IO.execute(() -> {
+            List<UserProfile> stored = localDatabase.loadProfiles(batch);
+            mainHandler.post(() -> onStoredProfilesLoaded(batch, stored));
+        });
+    }
+
+    private void onStoredProfilesLoaded(List<String> batch, List<UserProfile> stored) {
+        long now = System.currentTimeMillis();
+        Set<String> updated = new HashSet<>();
+        Set<String> fresh = new HashSet<>();
+        for (UserProfile profile : stored) {
+            memoryCache.put(profile.getUid(), profile);
+            updated.add(profile.getUid());
+            if (!profile.isExpired(now, PROFILE_TTL_MS)) {
+                fresh.add(profile.getUid());
+            }
+        }
+        for (String uid : batch) {
+            if (fresh.contains(uid)) {
+                loadingUids.remove(uid);
+            } else {
+                pendingFetches.add(uid);
+            }
+        }
+        startPendingFetches();
+        notifyUpdated(updated);
+    }
+
+    private void startPendingFetches() {
+        while (fetchesInFlight < MAX_IN_FLIGHT_FETCHES && !pendingFetches.isEmpty()) {
+            fetch(pendingFetches.remove());
+        }
+    }
+
+    private void onFetchFinished(String uid) {
+        loadingUids.remove(uid);
+        fetchesInFlight--;
+        startPendingFetches();
+    }
+
+    private void fetch(String uid) {
+        fetchesInFlight++;
+        usersRef.child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                onFetchFinished(uid);
+                UserProfile profile = UserProfileMapper.fromMap(uid, snapshot.getValue(), System.currentTimeMillis());
+                memoryCache.put(uid, profile);
+                LocalChatDatabase.DISK_IO.execute(() -> localDatabase.saveProfile(profile));
+                Set<String> updated = new HashSet<>();
+                updated.add(uid);
+                notifyUpdated(updated);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                onFetchFinished(uid);
+                Log.e(TAG, "fetch: onCancelled for uid=" + uid, error.toException());
+            }
+        });
+    }
+
+    private void notifyUpdated(Set<String> uids) {
+        if (uids.isEmpty()) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onProfilesUpdated(uids);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.life.chat.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Политика keepSynced для дискового кэша Firebase.
+ * Постоянно синхронизируются сводка чатов пользователя и последние страницы
+ * нескольких недавно открытых чатов, поэтому их повторное открытие берёт данные
+ * из кэша без ожидания сети. Самый давно открытый чат перестаёт синхронизироваться,
+ * когда открытых больше MAX_SYNCED_CHATS. Список недавних чатов хранится отдельно для
+ * каждого пользователя и переживает перезапуск.
+ * Все методы вызываются на главном потоке.
+ */
+public class SyncPolicy {
+
+    private static final String PREFS_NAME = "sync_policy";
+    private static final String KEY_RECENT_CHATS_PREFIX = "recent_chats_";
+
+    /** Сколько недавних чатов держать синхронизированными. */
+    private static final int MAX_SYNCED_CHATS = 5;
+
+    private static SyncPolicy instance;
+
+    private final SharedPreferences preferences;
+    // Первым идёт самый давно открытый чат
+    private final LinkedHashSet<String> recentChatIds = new LinkedHashSet<>();
+    // Пользователь, чьи сводка и недавние чаты сейчас синхронизируются
+    private String syncedUserId;
+
+    public static SyncPolicy getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncPolicy(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SyncPolicy(Context context) {
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Включает синхронизацию сводки чатов пользователя и его недавних чатов из прошлого
+     * запуска. Если до этого синхронизировались чаты другого пользователя, они
+     * отключаются. Чаты, открытые до восстановления, считаются свежее сохранённых.
+     * Повторные вызовы для того же пользователя игнорируются.
+     *
+     * @param userId ID вошедшего пользователя
+     */
+    public void restore(String userId) {
+        if (userId.equals(syncedUserId)) {
+            return;
+        }
+        if (syncedUserId != null) {
+            userChatsQuery(syncedUserId).keepSynced(false);
+            for (String chatId : recentChatIds) {
+                chatQuery(chatId).keepSynced(false);
+            }
+            recentChatIds.clear();
+        }
+        syncedUserId = userId;
+        userChatsQuery(userId).keepSynced(true);
+
+        LinkedHashSet<String> merged = new LinkedHashSet<>();
+        String saved = preferences.getString(recentChatsKey(userId), "");
+        if (!TextUtils.isEmpty(saved)) {
+            Collections.addAll(merged, saved.split(","));
+        }
+        for (String chatId : recentChatIds) {
+            merged.remove(chatId);
+            merged.add(chatId);
+        }
+        Iterator<String> iterator = merged.iterator();
+        while (merged.size() > MAX_SYNCED_CHATS) {
+            iterator.next();
+            iterator.remove();
+        }
+        for (String chatId : merged) {
+            if (!recentChatIds.contains(chatId)) {
+                chatQuery(chatId).keepSynced(true);
+            }
+        }
+        recentChatIds.clear();
+        recentChatIds.addAll(merged);
+        save();
+    }
+
+    /**
+     * Отмечает открытие чата: он становится самым свежим в списке синхронизируемых,
+     * а самый давний чат сверх лимита вытесняется.
+     *
+     * @param chatId ID чата
+     */
+    public void onChatOpened(String chatId) {
+        if (!recentChatIds.remove(chatId)) {
+            chatQuery(chatId).keepSynced(true);
+        }
+        recentChatIds.add(chatId);
+        while (recentChatIds.size() > MAX_SYNCED_CHATS) {
+            String evicted = recentChatIds.iterator().next();
+            recentChatIds.remove(evicted);
+            chatQuery(evicted).keepSynced(false);
+        }
+        // До restore список ещё не привязан к пользователю и сохранится при слиянии
+        if (syncedUserId != null) {
+            save();
+        }
+    }
+
+    /** @return ID синхронизируемых чатов, первым идёт самый давно открытый */
+    public List<String> getSyncedChatIds() {
+        return new ArrayList<>(recentChatIds);
+    }
+
+    private void save() {
+        preferences.edit()
+                .putString(recentChatsKey(syncedUserId), TextUtils.join(",", recentChatIds))
+                .apply();
+    }
+
+    private static String recentChatsKey(String userId) {
+        return KEY_RECENT_CHATS_PREFIX + userId;
+    }
+
+    private static Query userChatsQuery(String userId) {
+        return FirebaseDatabase.getInstance().getReference().child("user_chats").child(userId);
+    }
+
+    // Совпадает с запросом первой страницы в MessageRepository, чтобы он обслуживался из кэша
+    private static Query chatQuery(String chatId) {
+        return FirebaseDatabase.getInstance().getReference().child("messages").child(chatId)
+                .orderByKey().limitToLast(MessageRepository.PAGE_SIZE);
+    }
+}
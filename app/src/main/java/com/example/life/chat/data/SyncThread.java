@@ -0,0 +1,35 @@
+package com.example.life.chat.data;
+
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Поток синхронизации чатов.
+ * Модель потоков репозиториев:
+ * <ul>
+ *     <li>колбэки Firebase приходят на главный поток и только передают неизменяемый
+ *     DataSnapshot в {@link #EXECUTOR};</li>
+ *     <li>разбор снимков и слияние со списками выполняются в {@link #EXECUTOR}, и только
+ *     в нём читаются и изменяются списки сообщений и чатов;</li>
+ *     <li>на главный поток передаются готовые неизменяемые списки, там остаётся
+ *     только установить значение LiveData и обновить адаптер.</li>
+ * </ul>
+ * Поток один, поэтому изменения применяются в том порядке, в котором их прислал Firebase.
+ */
+public final class SyncThread {
+
+    /** Единственный поток разбора и слияния данных синхронизации. */
+    public static final Executor EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "chat-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SyncThread() {
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.life.chat.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.firebase.database.DatabaseReference;
+
+/**
+ * Публикует признак набора текста typing/{chatId}/{uid}.
+ * Запись делается один раз в начале набора и один раз после паузы,
+ * а не на каждое нажатие клавиши. При обрыве связи признак снимается через onDisconnect.
+ * Все методы вызываются на главном потоке.
+ */
+class TypingReporter {
+
+    private static final String TAG = "TypingReporter";
+
+    /** Через сколько после последнего нажатия набор считается законченным. */
+    private static final long TYPING_IDLE_MS = 4000;
+
+    private final DatabaseReference typingRef;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable stopTyping = this::stop;
+    private boolean typing = false;
+
+    TypingReporter(DatabaseReference typingRef) {
+        this.typingRef = typingRef;
+    }
+
+    /**
+     * Вызывается при каждом изменении поля ввода.
+     *
+     * @param empty true, если поле ввода пустое
+     */
+    void onInputChanged(boolean empty) {
+        if (empty) {
+            stop();
+            return;
+        }
+        mainHandler.removeCallbacks(stopTyping);
+        mainHandler.postDelayed(stopTyping, TYPING_IDLE_MS);
+        if (!typing) {
+            typing = true;
+            typingRef.onDisconnect().removeValue();
+            typingRef.setValue(true)
+                    .addOnFailureListener(e -> Log.e(TAG, "Ошибка записи признака набора", e));
+        }
+    }
+
+    /**
+     * Снимает признак набора (после паузы, отправки сообщения или закрытия чата).
+     */
+    void stop() {
+        mainHandler.removeCallbacks(stopTyping);
+        if (typing) {
+            typing = false;
+            typingRef.removeValue();
+            typingRef.onDisconnect().cancel();
+        }
+    }
+}
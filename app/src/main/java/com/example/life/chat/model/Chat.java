@@ -5,6 +5,10 @@ public class Chat {
     private String otherUserId;
     private String lastMessage;
     private long lastMessageTimestamp;
+    private int unreadCount;
+    private String lastMessageSenderId;
+    // Время последнего сообщения, прочитанного собеседником (отметка о прочтении)
+    private long peerLastReadTimestamp;
 
     public Chat() {
         // Пустой конструктор для Firebase
@@ -48,4 +52,37 @@ public class Chat {
     public void setLastMessageTimestamp(long lastMessageTimestamp) {
         this.lastMessageTimestamp = lastMessageTimestamp;
     }
-} 
\ No newline at end of file
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public String getLastMessageSenderId() {
+        return lastMessageSenderId;
+    }
+
+    public void setLastMessageSenderId(String lastMessageSenderId) {
+        this.lastMessageSenderId = lastMessageSenderId;
+    }
+
+    public long getPeerLastReadTimestamp() {
+        return peerLastReadTimestamp;
+    }
+
+    public void setPeerLastReadTimestamp(long peerLastReadTimestamp) {
+        this.peerLastReadTimestamp = peerLastReadTimestamp;
+    }
+
+    /**
+     * @return true, если последнее сообщение отправлено пользователем userId и собеседник его прочитал
+     */
+    public boolean isLastMessageReadByPeer(String userId) {
+        return lastMessageTimestamp > 0
+                && userId != null && userId.equals(lastMessageSenderId)
+                && peerLastReadTimestamp >= lastMessageTimestamp;
+    }
+}
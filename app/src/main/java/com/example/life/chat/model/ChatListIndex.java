@@ -0,0 +1,142 @@
+package com.example.life.chat.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Список чатов, упорядоченный по времени последнего сообщения (сначала новые),
+ * с индексами по ID чата и по ID собеседника.
+ * Поиск чата выполняется за O(1), обновлённый чат переносится на своё место по времени
+ * без пересортировки всего списка, пересчитываются только позиции между старым и новым местом.
+ * Класс не потокобезопасен.
+ */
+public class ChatListIndex {
+
+    private final List<Chat> chats = new ArrayList<>();
+    private final Map<String, Integer> positionsById = new HashMap<>();
+    private final Map<String, String> chatIdsByUser = new HashMap<>();
+
+    /** @return количество чатов */
+    public int size() {
+        return chats.size();
+    }
+
+    /**
+     * @param chatId ID чата
+     * @return true, если чат есть в списке
+     */
+    public boolean contains(String chatId) {
+        return positionsById.containsKey(chatId);
+    }
+
+    /**
+     * @param chatId ID чата
+     * @return чат или null
+     */
+    public Chat get(String chatId) {
+        Integer position = positionsById.get(chatId);
+        return position != null ? chats.get(position) : null;
+    }
+
+    /**
+     * @param otherUserId ID собеседника
+     * @return чат с собеседником или null
+     */
+    public Chat findByOtherUser(String otherUserId) {
+        String chatId = chatIdsByUser.get(otherUserId);
+        return chatId != null ? get(chatId) : null;
+    }
+
+    /**
+     * Добавляет чат или заменяет чат с тем же ID и ставит его на место
+     * по времени последнего сообщения.
+     *
+     * @param chat новое состояние чата
+     * @return новая позиция чата
+     */
+    public int put(Chat chat) {
+        Integer oldPosition = positionsById.get(chat.getId());
+        if (oldPosition != null) {
+            Chat old = chats.remove((int) oldPosition);
+            if (old.getOtherUserId() != null && !old.getOtherUserId().equals(chat.getOtherUserId())) {
+                chatIdsByUser.remove(old.getOtherUserId());
+            }
+        }
+        int newPosition = insertionPoint(chat.getLastMessageTimestamp());
+        chats.add(newPosition, chat);
+        if (chat.getOtherUserId() != null) {
+            chatIdsByUser.put(chat.getOtherUserId(), chat.getId());
+        }
+        if (oldPosition == null) {
+            reindex(newPosition, chats.size() - 1);
+        } else {
+            reindex(Math.min(oldPosition, newPosition), Math.max(oldPosition, newPosition));
+        }
+        return newPosition;
+    }
+
+    /**
+     * Удаляет чат из списка.
+     *
+     * @param chatId ID чата
+     * @return true, если чат был в списке
+     */
+    public boolean remove(String chatId) {
+        Integer position = positionsById.remove(chatId);
+        if (position == null) {
+            return false;
+        }
+        Chat removed = chats.remove((int) position);
+        if (removed.getOtherUserId() != null && chatId.equals(chatIdsByUser.get(removed.getOtherUserId()))) {
+            chatIdsByUser.remove(removed.getOtherUserId());
+        }
+        reindex(position, chats.size() - 1);
+        return true;
+    }
+
+    /**
+     * @return неизменяемая копия индекса по ID собеседника, для поиска в другом потоке
+     */
+    public Map<String, Chat> toUserMap() {
+        Map<String, Chat> chatsByUser = new HashMap<>(chatIdsByUser.size() * 2);
+        for (Map.Entry<String, String> entry : chatIdsByUser.entrySet()) {
+            chatsByUser.put(entry.getKey(), get(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(chatsByUser);
+    }
+
+    /** @return неизменяемая копия списка в текущем порядке */
+    public List<Chat> toList() {
+        return Collections.unmodifiableList(new ArrayList<>(chats));
+    }
+
+    /**
+     * Позиция для вставки: после всех чатов с таким же или более новым сообщением.
+     * Новое сообщение почти всегда самое свежее, поэтому сначала проверяется начало списка.
+     */
+    private int insertionPoint(long timestamp) {
+        if (chats.isEmpty() || chats.get(0).getLastMessageTimestamp() < timestamp) {
+            return 0;
+        }
+        int low = 0;
+        int high = chats.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (chats.get(middle).getLastMessageTimestamp() >= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void reindex(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            positionsById.put(chats.get(i).getId(), i);
+        }
+    }
+}
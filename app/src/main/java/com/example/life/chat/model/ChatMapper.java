@@ -0,0 +1,162 @@
+package com.example.life.chat.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Преобразование сводки чата user_chats/{uid}/{otherUid} в формат Firebase и обратно
+ * без рефлексии.
+ */
+public final class ChatMapper {
+
+    public static final String FIELD_CHAT_ID = "chatId";
+    public static final String FIELD_LAST_MESSAGE = "lastMessage";
+    public static final String FIELD_LAST_MESSAGE_TIMESTAMP = "lastMessageTimestamp";
+    public static final String FIELD_LAST_MESSAGE_SENDER_ID = "lastMessageSenderId";
+    public static final String FIELD_UNREAD_COUNT = "unreadCount";
+    public static final String FIELD_LAST_READ_TIMESTAMP = "lastReadTimestamp";
+    public static final String FIELD_PEER_LAST_READ_TIMESTAMP = "peerLastReadTimestamp";
+    public static final String FIELD_PARTICIPANTS = "participants";
+
+    private ChatMapper() {
+    }
+
+    /**
+     * Создает чат из значения сводки.
+     * Поддерживает старый формат, в котором значением был только ID чата.
+     *
+     * @param otherUserId ключ узла (ID собеседника)
+     * @param value результат DataSnapshot.getValue()
+     * @return чат или null, если запись некорректна
+     */
+    public static Chat fromSummary(String otherUserId, Object value) {
+        if (otherUserId == null) {
+            return null;
+        }
+        if (value instanceof String) {
+            return new Chat((String) value, otherUserId, "", 0);
+        }
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        String chatId = MessageMapper.asString(fields.get(FIELD_CHAT_ID));
+        if (chatId == null) {
+            return null;
+        }
+        String lastMessage = MessageMapper.asString(fields.get(FIELD_LAST_MESSAGE));
+        Chat chat = new Chat(chatId, otherUserId, lastMessage != null ? lastMessage : "",
+                MessageMapper.asLong(fields.get(FIELD_LAST_MESSAGE_TIMESTAMP)));
+        chat.setUnreadCount((int) MessageMapper.asLong(fields.get(FIELD_UNREAD_COUNT)));
+        chat.setLastMessageSenderId(MessageMapper.asString(fields.get(FIELD_LAST_MESSAGE_SENDER_ID)));
+        chat.setPeerLastReadTimestamp(MessageMapper.asLong(fields.get(FIELD_PEER_LAST_READ_TIMESTAMP)));
+        return chat;
+    }
+
+    /**
+     * Добавляет в многопутевое обновление поля сводки о последнем сообщении чата.
+     *
+     * @param updates карта для updateChildren
+     * @param summaryPath путь сводки вида "user_chats/{uid}/{otherUid}/"
+     * @param chatId ID чата
+     * @param lastMessage последнее сообщение
+     */
+    public static void putLastMessage(Map<String, Object> updates, String summaryPath, String chatId, Message lastMessage) {
+        updates.put(summaryPath + FIELD_CHAT_ID, chatId);
+        updates.put(summaryPath + FIELD_LAST_MESSAGE, lastMessage.getText());
+        updates.put(summaryPath + FIELD_LAST_MESSAGE_TIMESTAMP, lastMessage.getTimestamp());
+        updates.put(summaryPath + FIELD_LAST_MESSAGE_SENDER_ID, lastMessage.getSenderId());
+    }
+
+    /**
+     * Добавляет в многопутевое обновление отметку о прочтении для собеседника:
+     * время прочтения попадает в его сводку чата.
+     *
+     * @param updates карта для updateChildren
+     * @param userId ID прочитавшего пользователя
+     * @param otherUserId ID собеседника
+     * @param readTimestamp время последнего прочитанного сообщения
+     */
+    public static void putPeerReadMarker(Map<String, Object> updates, String userId, String otherUserId, long readTimestamp) {
+        updates.put("user_chats/" + otherUserId + "/" + userId + "/" + FIELD_PEER_LAST_READ_TIMESTAMP, readTimestamp);
+    }
+
+    /**
+     * Применяет отметку о прочтении к сводке чата прочитавшего пользователя (внутри транзакции).
+     * Счётчик непрочитанных сбрасывается, только если прочитано последнее сообщение сводки
+     * или оно отправлено самим пользователем: сообщение, пришедшее после отмеченного,
+     * остаётся непрочитанным.
+     *
+     * @param summary текущее значение сводки user_chats/{userId}/{otherUid}
+     * @param userId ID прочитавшего пользователя
+     * @param readTimestamp время последнего прочитанного сообщения
+     * @return новое значение сводки; сводка не в формате объекта возвращается без изменений
+     */
+    public static Object applyReadMarker(Object summary, String userId, long readTimestamp) {
+        if (!(summary instanceof Map)) {
+            return summary;
+        }
+        Map<String, Object> fields = new HashMap<>();
+        for (Map.Entry<?, ?> field : ((Map<?, ?>) summary).entrySet()) {
+            fields.put(String.valueOf(field.getKey()), field.getValue());
+        }
+        long lastMessageTimestamp = MessageMapper.asLong(fields.get(FIELD_LAST_MESSAGE_TIMESTAMP));
+        if (lastMessageTimestamp <= readTimestamp
+                || userId.equals(MessageMapper.asString(fields.get(FIELD_LAST_MESSAGE_SENDER_ID)))) {
+            fields.put(FIELD_UNREAD_COUNT, 0);
+        }
+        long lastReadTimestamp = MessageMapper.asLong(fields.get(FIELD_LAST_READ_TIMESTAMP));
+        fields.put(FIELD_LAST_READ_TIMESTAMP, Math.max(lastReadTimestamp, readTimestamp));
+        return fields;
+    }
+
+    /**
+     * Возвращает ID чата двух пользователей. ID не зависит от порядка аргументов,
+     * поэтому оба собеседника, открывая чат друг с другом, приходят к одному узлу.
+     *
+     * @param firstUserId ID одного участника
+     * @param secondUserId ID другого участника
+     * @return ID чата
+     */
+    public static String chatIdFor(String firstUserId, String secondUserId) {
+        return firstUserId.compareTo(secondUserId) < 0
+                ? firstUserId + "_" + secondUserId
+                : secondUserId + "_" + firstUserId;
+    }
+
+    /**
+     * Добавляет в многопутевое обновление всё, что нужно для открытия чата:
+     * список участников и ID чата в сводках обоих участников.
+     * Повторная запись тех же значений ничего не меняет, поэтому обновление
+     * можно отправлять при каждом открытии и одновременно с обеих сторон.
+     * Если у пары уже есть чат со старым ID (в том числе в сводке старого формата-строки),
+     * правила базы отклоняют всё обновление, и чат открывается по существующей сводке.
+     *
+     * @param updates карта для updateChildren
+     * @param userId ID текущего пользователя
+     * @param otherUserId ID собеседника
+     * @return ID чата
+     */
+    public static String putChatOpen(Map<String, Object> updates, String userId, String otherUserId) {
+        String chatId = chatIdFor(userId, otherUserId);
+        putParticipants(updates, chatId, userId, otherUserId);
+        updates.put("user_chats/" + userId + "/" + otherUserId + "/" + FIELD_CHAT_ID, chatId);
+        updates.put("user_chats/" + otherUserId + "/" + userId + "/" + FIELD_CHAT_ID, chatId);
+        return chatId;
+    }
+
+    /**
+     * Добавляет в многопутевое обновление список участников чата chats/{chatId}/participants.
+     * Правила базы разрешают читать и писать сообщения чата только его участникам.
+     *
+     * @param updates карта для updateChildren
+     * @param chatId ID чата
+     * @param firstUserId ID первого участника
+     * @param secondUserId ID второго участника
+     */
+    public static void putParticipants(Map<String, Object> updates, String chatId, String firstUserId, String secondUserId) {
+        String participantsPath = "chats/" + chatId + "/" + FIELD_PARTICIPANTS + "/";
+        updates.put(participantsPath + firstUserId, true);
+        updates.put(participantsPath + secondUserId, true);
+    }
+}
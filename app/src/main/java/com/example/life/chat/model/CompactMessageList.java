@@ -0,0 +1,77 @@
+package com.example.life.chat.model;
+
+import java.util.BitSet;
+
+/**
+ * Неизменяемый снимок сообщений чата в колоночном виде.
+ * Вместо объекта {@link Message} на строку хранит параллельные массивы: ID и текст,
+ * номер отправителя в словаре и время как примитивы, признак ожидания в BitSet.
+ * Текст строки может отсутствовать (null), если он выгружен из памяти
+ * {@link CompactMessageStore} и ещё не прочитан обратно с диска.
+ * Массивы разделяются с хранилищем и могут быть длиннее size: хранилище дописывает только
+ * строки за пределами size, а существующие строки меняет в своей копии массивов.
+ * Снимок можно безопасно передавать между потоками.
+ */
+public final class CompactMessageList {
+
+    /** Пустой список. */
+    public static final CompactMessageList EMPTY = new CompactMessageList(
+            new String[0], new String[0], new int[0], new long[0], new BitSet(), new String[0], 0);
+
+    private final String[] ids;
+    private final String[] texts;
+    private final int[] senders;
+    private final long[] timestamps;
+    private final BitSet pending;
+    private final String[] senderDictionary;
+    private final int size;
+
+    CompactMessageList(String[] ids, String[] texts, int[] senders, long[] timestamps,
+                       BitSet pending, String[] senderDictionary, int size) {
+        this.ids = ids;
+        this.texts = texts;
+        this.senders = senders;
+        this.timestamps = timestamps;
+        this.pending = pending;
+        this.senderDictionary = senderDictionary;
+        this.size = size;
+    }
+
+    /** @return количество сообщений */
+    public int size() {
+        return size;
+    }
+
+    public String getId(int position) {
+        return ids[position];
+    }
+
+    /** @return текст сообщения или null, если он выгружен из памяти */
+    public String getText(int position) {
+        return texts[position];
+    }
+
+    public String getSenderId(int position) {
+        return senderDictionary[senders[position]];
+    }
+
+    public long getTimestamp(int position) {
+        return timestamps[position];
+    }
+
+    public boolean isPending(int position) {
+        return pending.get(position);
+    }
+
+    /**
+     * Создаёт отдельный объект сообщения для строки (для кода, которому нужен {@link Message}).
+     *
+     * @param position позиция сообщения
+     * @return новое сообщение
+     */
+    public Message getMessage(int position) {
+        Message message = new Message(ids[position], texts[position], getSenderId(position), timestamps[position]);
+        message.setPending(pending.get(position));
+        return message;
+    }
+}
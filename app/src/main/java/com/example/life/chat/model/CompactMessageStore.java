@@ -0,0 +1,304 @@
+package com.example.life.chat.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактное хранилище сообщений открытого чата.
+ * Сообщения лежат в параллельных массивах, а не отдельными объектами: отправитель хранится
+ * номером в словаре (в чате их обычно двое), время — в long[], признак ожидания — в BitSet.
+ * Тексты сообщений далеко от видимой области можно выгрузить ({@link #spillTexts}) и
+ * затем вернуть из локальной базы ({@link #restoreTexts}); ожидающие отправки сообщения
+ * не выгружаются, потому что их ещё нет в таблице сообщений.
+ * Для отображения выдаётся неизменяемый снимок {@link CompactMessageList}. Снимок не
+ * копирует массивы, а ссылается на них вместе с текущим размером: добавление в конец пишет
+ * только за пределы уже выданных снимков, а изменение существующих строк (замена, сдвиг,
+ * выгрузка текстов) сначала копирует массивы, если они отданы в снимок.
+ * Класс не потокобезопасен.
+ */
+public class CompactMessageStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] texts = new String[INITIAL_CAPACITY];
+    private int[] senders = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private BitSet pending = new BitSet();
+    // Строки с выгруженным текстом; null в texts сам по себе не значит, что текст выгружен
+    private BitSet spilled = new BitSet();
+    private int size;
+    private int residentTextCount;
+    // Массивы и BitSet ожидания отданы в снимок и не должны меняться на месте
+    private boolean columnsShared;
+    private boolean pendingShared;
+
+    private final List<String> senderDictionary = new ArrayList<>();
+    private final Map<String, Integer> senderCodes = new HashMap<>();
+
+    /** @return количество сообщений */
+    public int size() {
+        return size;
+    }
+
+    /** @return сколько текстов сейчас хранится в памяти */
+    public int getResidentTextCount() {
+        return residentTextCount;
+    }
+
+    public String getId(int position) {
+        return ids[position];
+    }
+
+    public String getSenderId(int position) {
+        return senderDictionary.get(senders[position]);
+    }
+
+    public long getTimestamp(int position) {
+        return timestamps[position];
+    }
+
+    /**
+     * Ищет сообщение с конца: обновляются почти всегда последние сообщения.
+     *
+     * @param messageId ID сообщения
+     * @return позиция сообщения или -1
+     */
+    public int lastIndexOf(String messageId) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (ids[i].equals(messageId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Добавляет сообщение в конец.
+     */
+    public void add(Message message) {
+        ensureCapacity(size + 1);
+        write(size, message);
+        size++;
+    }
+
+    /**
+     * Добавляет сообщения в конец в их порядке.
+     */
+    public void addAll(List<Message> messages) {
+        ensureCapacity(size + messages.size());
+        for (Message message : messages) {
+            write(size, message);
+            size++;
+        }
+    }
+
+    /**
+     * Добавляет сообщения в начало (страница более старой истории).
+     */
+    public void addAllAtStart(List<Message> messages) {
+        int count = messages.size();
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(size + count);
+        unshareColumns();
+        System.arraycopy(ids, 0, ids, count, size);
+        System.arraycopy(texts, 0, texts, count, size);
+        System.arraycopy(senders, 0, senders, count, size);
+        System.arraycopy(timestamps, 0, timestamps, count, size);
+        pending = shift(pending, 0, count);
+        pendingShared = false;
+        spilled = shift(spilled, 0, count);
+        for (int i = 0; i < count; i++) {
+            // Старые значения уже сдвинуты, счётчик текстов не должен их учитывать
+            texts[i] = null;
+            write(i, messages.get(i));
+        }
+        size += count;
+    }
+
+    /**
+     * Заменяет сообщение на позиции.
+     */
+    public void set(int position, Message message) {
+        checkPosition(position);
+        unshareColumns();
+        write(position, message);
+    }
+
+    /**
+     * Удаляет сообщение на позиции (например, отклонённое сервером).
+     */
+    public void remove(int position) {
+        checkPosition(position);
+        if (texts[position] != null) {
+            residentTextCount--;
+        }
+        unshareColumns();
+        int tail = size - position - 1;
+        System.arraycopy(ids, position + 1, ids, position, tail);
+        System.arraycopy(texts, position + 1, texts, position, tail);
+        System.arraycopy(senders, position + 1, senders, position, tail);
+        System.arraycopy(timestamps, position + 1, timestamps, position, tail);
+        pending = shift(pending, position + 1, -1);
+        pendingShared = false;
+        spilled = shift(spilled, position + 1, -1);
+        size--;
+        ids[size] = null;
+        texts[size] = null;
+    }
+
+    public void setPending(int position, boolean isPending) {
+        checkPosition(position);
+        if (pending.get(position) != isPending) {
+            unsharePending();
+            pending.set(position, isPending);
+        }
+    }
+
+    /**
+     * Выгружает тексты сообщений вне диапазона [keepFrom, keepTo].
+     *
+     * @return сколько текстов выгружено
+     */
+    public int spillTexts(int keepFrom, int keepTo) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if ((i < keepFrom || i > keepTo) && texts[i] != null && !pending.get(i)) {
+                unshareColumns();
+                texts[i] = null;
+                spilled.set(i);
+                count++;
+            }
+        }
+        residentTextCount -= count;
+        return count;
+    }
+
+    /**
+     * @return ID сообщений диапазона [from, to], тексты которых выгружены
+     */
+    public List<String> getSpilledIds(int from, int to) {
+        List<String> spilledIds = new ArrayList<>();
+        int end = Math.min(size - 1, to);
+        for (int i = spilled.nextSetBit(Math.max(0, from)); i >= 0 && i <= end; i = spilled.nextSetBit(i + 1)) {
+            spilledIds.add(ids[i]);
+        }
+        return spilledIds;
+    }
+
+    /**
+     * Возвращает выгруженные тексты, прочитанные с диска.
+     *
+     * @param textsById тексты по ID сообщения
+     */
+    public void restoreTexts(Map<String, String> textsById) {
+        if (textsById.isEmpty()) {
+            return;
+        }
+        for (int i = spilled.nextSetBit(0); i >= 0; i = spilled.nextSetBit(i + 1)) {
+            String text = textsById.get(ids[i]);
+            if (text != null) {
+                unshareColumns();
+                texts[i] = text;
+                spilled.clear(i);
+                residentTextCount++;
+            }
+        }
+    }
+
+    /**
+     * @return неизменяемый снимок текущего состояния
+     */
+    public CompactMessageList snapshot() {
+        columnsShared = true;
+        pendingShared = true;
+        return new CompactMessageList(ids, texts, senders, timestamps, pending,
+                senderDictionary.toArray(new String[0]), size);
+    }
+
+    private void write(int position, Message message) {
+        if (texts[position] != null) {
+            residentTextCount--;
+        }
+        ids[position] = message.getId();
+        texts[position] = message.getText();
+        spilled.clear(position);
+        if (message.getText() != null) {
+            residentTextCount++;
+        }
+        senders[position] = senderCode(message.getSenderId());
+        timestamps[position] = message.getTimestamp();
+        if (pending.get(position) != message.isPending()) {
+            unsharePending();
+            pending.set(position, message.isPending());
+        }
+    }
+
+    /**
+     * @return копия битов, в которой биты начиная с from сдвинуты на offset;
+     *         при сдвиге влево затёртые биты отбрасываются
+     */
+    private static BitSet shift(BitSet bits, int from, int offset) {
+        BitSet shifted = new BitSet();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            if (i >= from) {
+                shifted.set(i + offset);
+            } else if (i < from + Math.min(offset, 0)) {
+                shifted.set(i);
+            }
+        }
+        return shifted;
+    }
+
+    private int senderCode(String senderId) {
+        Integer code = senderCodes.get(senderId);
+        if (code == null) {
+            code = senderDictionary.size();
+            senderDictionary.add(senderId);
+            senderCodes.put(senderId, code);
+        }
+        return code;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        texts = Arrays.copyOf(texts, newCapacity);
+        senders = Arrays.copyOf(senders, newCapacity);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        columnsShared = false;
+    }
+
+    private void unshareColumns() {
+        if (!columnsShared) {
+            return;
+        }
+        ids = ids.clone();
+        texts = texts.clone();
+        senders = senders.clone();
+        timestamps = timestamps.clone();
+        columnsShared = false;
+    }
+
+    private void unsharePending() {
+        if (pendingShared) {
+            pending = (BitSet) pending.clone();
+            pendingShared = false;
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + size);
+        }
+    }
+}
@@ -5,6 +5,8 @@ public class Message {
     private String text;
     private String senderId;
     private long timestamp;
+    // Сообщение ещё не подтверждено сервером (только локально, MessageMapper его не пишет)
+    private boolean pending;
 
     public Message() {
         // Пустой конструктор для Firebase
@@ -48,4 +50,12 @@ public class Message {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
-} 
\ No newline at end of file
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.example.life.chat.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Преобразование сообщений в формат Firebase и обратно без рефлексии.
+ * Читает поля напрямую из карты, которую возвращает DataSnapshot.getValue(),
+ * и строит карту для записи через setValue/updateChildren.
+ */
+public final class MessageMapper {
+
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_TEXT = "text";
+    public static final String FIELD_SENDER_ID = "senderId";
+    public static final String FIELD_TIMESTAMP = "timestamp";
+
+    /** Максимальная длина текста, которую пропускают правила базы. */
+    public static final int MAX_TEXT_LENGTH = 4000;
+
+    private MessageMapper() {
+    }
+
+    /**
+     * Создает сообщение из значения узла messages/{chatId}/{messageId}.
+     *
+     * @param key ключ узла (push ID), используется, если в значении нет поля id
+     * @param value результат DataSnapshot.getValue()
+     * @return сообщение или null, если значение не является объектом сообщения
+     */
+    public static Message fromMap(String key, Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        Object id = fields.get(FIELD_ID);
+        return new Message(
+                id instanceof String ? (String) id : key,
+                asString(fields.get(FIELD_TEXT)),
+                asString(fields.get(FIELD_SENDER_ID)),
+                asLong(fields.get(FIELD_TIMESTAMP)));
+    }
+
+    /**
+     * Создает карту полей сообщения для записи в Firebase.
+     * Локальный признак ожидания отправки не записывается.
+     *
+     * @param message сообщение
+     * @return карта полей
+     */
+    public static Map<String, Object> toMap(Message message) {
+        Map<String, Object> fields = new HashMap<>(8);
+        fields.put(FIELD_ID, message.getId());
+        fields.put(FIELD_TEXT, message.getText());
+        fields.put(FIELD_SENDER_ID, message.getSenderId());
+        fields.put(FIELD_TIMESTAMP, message.getTimestamp());
+        return fields;
+    }
+
+    static String asString(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.life.chat.model;
+
+/**
+ * Сообщение, найденное поиском по истории, вместе с чатом, в котором оно находится.
+ */
+public class MessageSearchResult {
+    private final String chatId;
+    private final String otherUserId;
+    private final Message message;
+
+    public MessageSearchResult(String chatId, String otherUserId, Message message) {
+        this.chatId = chatId;
+        this.otherUserId = otherUserId;
+        this.message = message;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public String getOtherUserId() {
+        return otherUserId;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.life.chat.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Состояние пользователя из status/{uid}: в сети ли он и когда был в сети последний раз.
+ */
+public class UserPresence {
+
+    public static final String FIELD_ONLINE = "online";
+    public static final String FIELD_LAST_SEEN = "lastSeen";
+
+    /** Пользователь ни разу не был в сети (или запись ещё не загружена). */
+    public static final UserPresence UNKNOWN = new UserPresence(false, 0);
+
+    private final boolean online;
+    private final long lastSeen;
+
+    public UserPresence(boolean online, long lastSeen) {
+        this.online = online;
+        this.lastSeen = lastSeen;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    /** @return время последнего выхода из сети, мс (0, если неизвестно) */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Создает состояние из значения status/{uid}.
+     *
+     * @param value результат DataSnapshot.getValue()
+     */
+    public static UserPresence fromMap(Object value) {
+        if (!(value instanceof Map)) {
+            return UNKNOWN;
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        return new UserPresence(Boolean.TRUE.equals(fields.get(FIELD_ONLINE)),
+                MessageMapper.asLong(fields.get(FIELD_LAST_SEEN)));
+    }
+
+    /**
+     * Создает значение для записи в status/{uid}.
+     *
+     * @param online в сети ли пользователь
+     * @param lastSeen время, обычно ServerValue.TIMESTAMP
+     */
+    public static Map<String, Object> toMap(boolean online, Object lastSeen) {
+        Map<String, Object> fields = new HashMap<>(4);
+        fields.put(FIELD_ONLINE, online);
+        fields.put(FIELD_LAST_SEEN, lastSeen);
+        return fields;
+    }
+}
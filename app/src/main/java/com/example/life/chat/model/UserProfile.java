@@ -0,0 +1,44 @@
+package com.example.life.chat.model;
+
+/**
+ * Профиль пользователя из users/{uid} вместе со временем загрузки.
+ */
+public class UserProfile {
+    private final String uid;
+    private final String displayName;
+    private final String email;
+    private final long fetchedAt;
+
+    public UserProfile(String uid, String displayName, String email, long fetchedAt) {
+        this.uid = uid;
+        this.displayName = displayName;
+        this.email = email;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    /** @return имя для показа в интерфейсе, не бывает пустым */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * @param now текущее время, мс
+     * @param ttlMs время жизни профиля, мс
+     * @return true, если профиль пора обновить
+     */
+    public boolean isExpired(long now, long ttlMs) {
+        return now - fetchedAt > ttlMs;
+    }
+}
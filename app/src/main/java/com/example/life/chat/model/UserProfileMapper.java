@@ -0,0 +1,49 @@
+package com.example.life.chat.model;
+
+import java.util.Map;
+
+/**
+ * Преобразование записи users/{uid} в профиль пользователя без рефлексии.
+ */
+public final class UserProfileMapper {
+
+    public static final String FIELD_NAME = "name";
+    public static final String FIELD_EMAIL = "email";
+
+    private UserProfileMapper() {
+    }
+
+    /**
+     * Создает профиль из значения users/{uid}.
+     * Имя для показа берётся из поля name, иначе из части email до "@", иначе это uid.
+     *
+     * @param uid ID пользователя
+     * @param value результат DataSnapshot.getValue() (null, если пользователя нет)
+     * @param fetchedAt время загрузки, мс
+     * @return профиль, для несуществующего пользователя с uid вместо имени
+     */
+    public static UserProfile fromMap(String uid, Object value, long fetchedAt) {
+        String name = null;
+        String email = null;
+        if (value instanceof Map) {
+            Map<?, ?> fields = (Map<?, ?>) value;
+            name = MessageMapper.asString(fields.get(FIELD_NAME));
+            email = MessageMapper.asString(fields.get(FIELD_EMAIL));
+        }
+        return new UserProfile(uid, displayName(uid, name, email), email, fetchedAt);
+    }
+
+    static String displayName(String uid, String name, String email) {
+        if (name != null && !name.trim().isEmpty()) {
+            return name.trim();
+        }
+        if (email != null) {
+            int at = email.indexOf('@');
+            String localPart = at > 0 ? email.substring(0, at) : email;
+            if (!localPart.isEmpty()) {
+                return localPart;
+            }
+        }
+        return uid;
+    }
+}
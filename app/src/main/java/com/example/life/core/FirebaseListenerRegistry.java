@@ -0,0 +1,144 @@
+package com.example.life.core;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реестр слушателей Firebase одного владельца (репозитория).
+ * Хранит пары "запрос — слушатель" и снимает слушатель именно с того запроса,
+ * к которому он был подключён; владелец вызывает {@link #clear()}, когда закрывается.
+ * Также ведёт общий учёт живых слушателей по владельцам, который выводит
+ * adb shell dumpsys activity (см. MainActivity.dump).
+ */
+public class FirebaseListenerRegistry {
+
+    // Количество живых слушателей по именам владельцев (для диагностики)
+    private static final Map<String, Integer> LIVE_COUNTS = new HashMap<>();
+
+    private final String ownerName;
+    private final List<Registration> registrations = new ArrayList<>();
+
+    /**
+     * @param ownerName имя владельца в диагностике
+     */
+    public FirebaseListenerRegistry(@NonNull String ownerName) {
+        this.ownerName = ownerName;
+    }
+
+    /**
+     * Подключает слушатель дочерних событий к запросу и регистрирует пару.
+     *
+     * @return переданный слушатель
+     */
+    public ChildEventListener addChildEventListener(@NonNull Query query, @NonNull ChildEventListener listener) {
+        query.addChildEventListener(listener);
+        add(new Registration(query, listener));
+        return listener;
+    }
+
+    /**
+     * Подключает слушатель значения к запросу и регистрирует пару.
+     *
+     * @return переданный слушатель
+     */
+    public ValueEventListener addValueEventListener(@NonNull Query query, @NonNull ValueEventListener listener) {
+        query.addValueEventListener(listener);
+        add(new Registration(query, listener));
+        return listener;
+    }
+
+    /**
+     * Отключает ранее зарегистрированный слушатель.
+     *
+     * @param listener слушатель, возвращённый методом add*
+     */
+    public void remove(@NonNull Object listener) {
+        Iterator<Registration> iterator = registrations.iterator();
+        while (iterator.hasNext()) {
+            Registration registration = iterator.next();
+            if (registration.listener == listener) {
+                registration.detach();
+                iterator.remove();
+                changeLiveCount(-1);
+            }
+        }
+    }
+
+    /**
+     * Отключает все зарегистрированные слушатели.
+     */
+    public void clear() {
+        int removed = registrations.size();
+        for (Registration registration : registrations) {
+            registration.detach();
+        }
+        registrations.clear();
+        changeLiveCount(-removed);
+    }
+
+    /**
+     * @return общее количество живых слушателей во всех реестрах
+     */
+    public static synchronized int getLiveListenerCount() {
+        int total = 0;
+        for (int count : LIVE_COUNTS.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return снимок количества живых слушателей по владельцам
+     */
+    public static synchronized Map<String, Integer> getLiveListenerCounts() {
+        return Collections.unmodifiableMap(new HashMap<>(LIVE_COUNTS));
+    }
+
+    private void add(Registration registration) {
+        registrations.add(registration);
+        changeLiveCount(1);
+    }
+
+    private void changeLiveCount(int delta) {
+        if (delta == 0) {
+            return;
+        }
+        synchronized (FirebaseListenerRegistry.class) {
+            Integer current = LIVE_COUNTS.get(ownerName);
+            int updated = (current != null ? current : 0) + delta;
+            if (updated > 0) {
+                LIVE_COUNTS.put(ownerName, updated);
+            } else {
+                LIVE_COUNTS.remove(ownerName);
+            }
+        }
+    }
+
+    private static class Registration {
+        final Query query;
+        final Object listener;
+
+        Registration(Query query, Object listener) {
+            this.query = query;
+            this.listener = listener;
+        }
+
+        void detach() {
+            if (listener instanceof ChildEventListener) {
+                query.removeEventListener((ChildEventListener) listener);
+            } else if (listener instanceof ValueEventListener) {
+                query.removeEventListener((ValueEventListener) listener);
+            }
+        }
+    }
+}
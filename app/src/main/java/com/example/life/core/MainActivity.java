@@ -2,80 +2,236 @@ package com.example.life.core;
 
 import android.os.Bundle;
 
+import androidx.activity.OnBackPressedCallback;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+
 import com.example.life.R;
 import com.example.life.chat.ChatListFragment;
 import com.example.life.chat.MessengerFragment;
+import com.example.life.chat.RowViewPool;
+import com.example.life.chat.data.PresenceRepository;
 import com.example.life.settings.SettingsFragment;
 import com.example.life.auth.BaseActivity;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * Главная активность приложения, которая управляет навигацией между фрагментами.
  * Реализует интерфейсы для обработки взаимодействия с фрагментами чата и настроек.
+ * Список чатов создается один раз и при переходах только скрывается и показывается,
+ * а несколько недавно открытых чатов остаются в памяти вместе с загруженными
+ * сообщениями и подписками, поэтому переключение между ними мгновенное.
  */
-public class MainActivity extends BaseActivity implements MessengerFragment.OnMenuButtonClickListener, ChatListFragment.OnSettingsButtonClickListener, ChatListFragment.OnChatSelectedListener {
+public class MainActivity extends BaseActivity implements MessengerFragment.OnMenuButtonClickListener, ChatListFragment.OnSettingsButtonClickListener, ChatListFragment.OnChatSelectedListener, RowViewPool.Provider {
+
+    private static final String TAG_CHAT_LIST = "chat_list_fragment";
+    private static final String TAG_SETTINGS = "settings_fragment";
+    private static final String TAG_CHAT_PREFIX = "messenger_fragment:";
+
+    private static final String STATE_RECENT_CHATS = "recent_chats";
+    private static final String STATE_VISIBLE_CHAT = "visible_chat";
+
+    /** Сколько открытых чатов держать в памяти одновременно. */
+    private static final int MAX_CACHED_CHATS = 3;
+
+    // Теги закэшированных MessengerFragment, первым идет последний открытый
+    private final LinkedList<String> recentChatTags = new LinkedList<>();
+    private String visibleChatTag;
+    private RowViewPool rowViewPool;
+
+    private final OnBackPressedCallback closeChatCallback = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            showChatList();
+        }
+    };
 
     /**
      * Инициализация активности и установка начального фрагмента.
      * Если savedInstanceState == null, значит это первый запуск активности,
      * и мы устанавливаем ChatListFragment как начальный фрагмент.
+     * Иначе восстанавливаем список закэшированных чатов.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Строки списка чатов создаются в фоне, пока список читается с диска
+        getRowViewPool().preinflateChatRows();
         setContentView(R.layout.activity_main);
 
         // Загружаем ChatListFragment в контейнер при первом запуске, если нет сохраненного состояния
         if (savedInstanceState == null) {
             getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.fragment_container, new ChatListFragment())
+                    .add(R.id.fragment_container, new ChatListFragment(), TAG_CHAT_LIST)
                     .commit();
+        } else {
+            ArrayList<String> savedTags = savedInstanceState.getStringArrayList(STATE_RECENT_CHATS);
+            if (savedTags != null) {
+                recentChatTags.addAll(savedTags);
+            }
+            visibleChatTag = savedInstanceState.getString(STATE_VISIBLE_CHAT);
+        }
+
+        closeChatCallback.setEnabled(visibleChatTag != null);
+        getOnBackPressedDispatcher().addCallback(this, closeChatCallback);
+
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user != null) {
+            PresenceRepository.getInstance().start(user.getUid());
+        }
+    }
+
+    /**
+     * Пользователь "в сети", пока активность на экране.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        PresenceRepository.getInstance().setForeground(true);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        PresenceRepository.getInstance().setForeground(false);
+    }
+
+    /**
+     * Пул создаётся при первом запросе: восстановленные фрагменты запрашивают его
+     * ещё внутри super.onCreate.
+     */
+    @Override
+    public RowViewPool getRowViewPool() {
+        if (rowViewPool == null) {
+            rowViewPool = new RowViewPool(this);
+        }
+        return rowViewPool;
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putStringArrayList(STATE_RECENT_CHATS, new ArrayList<>(recentChatTags));
+        outState.putString(STATE_VISIBLE_CHAT, visibleChatTag);
+    }
+
+    /**
+     * Добавляет к выводу adb shell dumpsys activity количество живых слушателей Firebase
+     * по владельцам, чтобы находить неснятые подписки.
+     */
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("Firebase listeners: " + FirebaseListenerRegistry.getLiveListenerCount());
+        for (Map.Entry<String, Integer> owner : FirebaseListenerRegistry.getLiveListenerCounts().entrySet()) {
+            writer.print(prefix);
+            writer.println("  " + owner.getKey() + ": " + owner.getValue());
         }
     }
 
     /**
      * Обработчик нажатия кнопки меню в MessengerFragment.
-     * Переключает на фрагмент списка чатов (ChatListFragment).
-     * Использует addToBackStack для возможности возврата назад.
+     * Возвращает к списку чатов (ChatListFragment), не уничтожая открытый чат.
      */
     @Override
     public void onMenuButtonClick() {
-        // Переходим на ChatListFragment при нажатии кнопки меню в MessengerFragment
-        getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, new ChatListFragment())
-                .addToBackStack("chat_list_fragment") // Добавляем в Back Stack с тегом
-                .commit();
+        showChatList();
     }
 
     /**
      * Обработчик нажатия кнопки настроек в ChatListFragment.
-     * Переключает на фрагмент настроек (SettingsFragment).
+     * Показывает фрагмент настроек (SettingsFragment) поверх скрытого списка чатов.
      * Использует addToBackStack для возможности возврата назад.
      */
     @Override
     public void onSettingsButtonClick() {
-        // Переходим на SettingsFragment при нажатии кнопки настроек в ChatListFragment
-        getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, new SettingsFragment())
-                .addToBackStack("settings_fragment") // Добавляем в Back Stack с тегом
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        FragmentTransaction transaction = fragmentManager.beginTransaction()
+                .setReorderingAllowed(true);
+        Fragment chatList = fragmentManager.findFragmentByTag(TAG_CHAT_LIST);
+        if (chatList != null) {
+            transaction.hide(chatList);
+        }
+        transaction.add(R.id.fragment_container, new SettingsFragment(), TAG_SETTINGS)
+                .addToBackStack(TAG_SETTINGS) // Добавляем в Back Stack с тегом
                 .commit();
     }
 
     /**
      * Обработчик выбора чата в списке чатов.
-     * Создает новый экземпляр MessengerFragment с выбранным чатом
-     * и переключает на него.
-     * 
+     * Показывает уже открытый ранее MessengerFragment выбранного чата или создает новый.
+     * Самый давно открытый чат вытесняется из памяти, если их больше MAX_CACHED_CHATS.
+     *
      * @param chatId ID выбранного чата
      * @param otherUserId ID собеседника
      */
     @Override
     public void onChatSelected(String chatId, String otherUserId) {
-        // Переходим в MessengerFragment с выбранным чатом
-        MessengerFragment messengerFragment = MessengerFragment.newInstance(chatId, otherUserId); // Используем newInstance
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        String chatTag = TAG_CHAT_PREFIX + chatId;
 
-        getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, messengerFragment)
-                .addToBackStack("messenger_fragment") // Добавляем в Back Stack с тегом
-                .commit();
+        FragmentTransaction transaction = fragmentManager.beginTransaction()
+                .setReorderingAllowed(true);
+        hideIfPresent(transaction, TAG_CHAT_LIST);
+        if (visibleChatTag != null && !visibleChatTag.equals(chatTag)) {
+            hideIfPresent(transaction, visibleChatTag);
+        }
+
+        Fragment messengerFragment = fragmentManager.findFragmentByTag(chatTag);
+        if (messengerFragment != null) {
+            transaction.show(messengerFragment);
+        } else {
+            transaction.add(R.id.fragment_container, MessengerFragment.newInstance(chatId, otherUserId), chatTag); // Используем newInstance
+        }
+
+        recentChatTags.remove(chatTag);
+        recentChatTags.addFirst(chatTag);
+        while (recentChatTags.size() > MAX_CACHED_CHATS) {
+            Fragment evicted = fragmentManager.findFragmentByTag(recentChatTags.removeLast());
+            if (evicted != null) {
+                transaction.remove(evicted);
+            }
+        }
+
+        transaction.commit();
+        visibleChatTag = chatTag;
+        closeChatCallback.setEnabled(true);
+    }
+
+    /**
+     * Скрывает открытый чат и показывает список чатов.
+     */
+    private void showChatList() {
+        if (visibleChatTag == null) {
+            return;
+        }
+        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction()
+                .setReorderingAllowed(true);
+        hideIfPresent(transaction, visibleChatTag);
+        Fragment chatList = getSupportFragmentManager().findFragmentByTag(TAG_CHAT_LIST);
+        if (chatList != null) {
+            transaction.show(chatList);
+        }
+        transaction.commit();
+        visibleChatTag = null;
+        closeChatCallback.setEnabled(false);
+    }
+
+    private void hideIfPresent(FragmentTransaction transaction, String tag) {
+        Fragment fragment = getSupportFragmentManager().findFragmentByTag(tag);
+        if (fragment != null) {
+            transaction.hide(fragment);
+        }
     }
-} 
\ No newline at end of file
+}
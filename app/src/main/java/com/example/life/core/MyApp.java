@@ -1,13 +1,89 @@
 package com.example.life.core;
 
 import android.app.Application;
+import android.os.Looper;
 
+import com.example.life.BuildConfig;
+import com.example.life.chat.data.LocalChatDatabase;
+import com.example.life.chat.data.MessageOutbox;
+import com.example.life.chat.data.SyncPolicy;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.FirebaseDatabase;
 
+/**
+ * Класс приложения. Выполняет инициализацию в два этапа:
+ * на критическом пути запуска только то, без чего нельзя показать первый экран
+ * (Firebase, настройка базы данных, сохранённая сессия), а остальное откладывает
+ * до первого простоя главного потока. Длительность этапов пишется в {@link StartupTrace}.
+ */
 public class MyApp extends Application {
+
+    /** Размер дискового кэша Firebase. */
+    private static final long DATABASE_CACHE_SIZE_BYTES = 20L * 1024 * 1024;
+
+    private static final int EMULATOR_DATABASE_PORT = 9000;
+    private static final int EMULATOR_AUTH_PORT = 9099;
+
     @Override
     public void onCreate() {
         super.onCreate();
+        StartupTrace trace = StartupTrace.getInstance();
+
+        trace.begin(StartupTrace.STAGE_FIREBASE);
         FirebaseApp.initializeApp(this);
+        configureDatabase(FirebaseDatabase.getInstance());
+        trace.end(StartupTrace.STAGE_FIREBASE);
+
+        trace.begin(StartupTrace.STAGE_AUTH);
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        trace.end(StartupTrace.STAGE_AUTH);
+
+        trace.mark(StartupTrace.MARK_APPLICATION_CREATED);
+
+        Looper.myQueue().addIdleHandler(() -> {
+            runDeferredStage(user);
+            return false;
+        });
+    }
+
+    /**
+     * Единственное место настройки FirebaseDatabase. Настройки применяются только
+     * до первого обращения к базе, поэтому метод вызывается раньше любых активностей.
+     * Дисковый кэш позволяет открывать список чатов и недавние чаты без ожидания сети.
+     * В сборке с life.useFirebaseEmulator=true база и авторизация работают через
+     * локальный эмулятор Firebase с правилами из database.rules.json.
+     *
+     * @param database экземпляр базы данных приложения
+     */
+    private void configureDatabase(FirebaseDatabase database) {
+        if (BuildConfig.USE_FIREBASE_EMULATOR) {
+            database.useEmulator(BuildConfig.FIREBASE_EMULATOR_HOST, EMULATOR_DATABASE_PORT);
+            FirebaseAuth.getInstance().useEmulator(BuildConfig.FIREBASE_EMULATOR_HOST, EMULATOR_AUTH_PORT);
+        }
+        database.setPersistenceEnabled(true);
+        database.setPersistenceCacheSizeBytes(DATABASE_CACHE_SIZE_BYTES);
+    }
+
+    /**
+     * Отложенная инициализация: открывает локальную базу на фоновом потоке,
+     * запускает очередь исходящих сообщений, включает синхронизацию сводки и недавних
+     * чатов и заранее обновляет токен сессии, чтобы подключение к базе не ждало его
+     * при первом запросе.
+     *
+     * @param user сохранённый пользователь или null, если вход не выполнен
+     */
+    private void runDeferredStage(FirebaseUser user) {
+        StartupTrace trace = StartupTrace.getInstance();
+        trace.begin(StartupTrace.STAGE_DEFERRED);
+        LocalChatDatabase localDatabase = LocalChatDatabase.getInstance(this);
+        LocalChatDatabase.DISK_IO.execute(localDatabase::getWritableDatabase);
+        if (user != null) {
+            MessageOutbox.getInstance(this);
+            SyncPolicy.getInstance(this).restore(user.getUid());
+            user.getIdToken(false);
+        }
+        trace.end(StartupTrace.STAGE_DEFERRED);
     }
-} 
\ No newline at end of file
+}
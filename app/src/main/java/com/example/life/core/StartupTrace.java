@@ -0,0 +1,116 @@
+package com.example.life.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Журнал времени запуска приложения.
+ * Хранит длительность этапов инициализации и моменты ключевых событий
+ * (например, первый показ списка чатов) относительно начала запуска.
+ * Время считается в миллисекундах, методы потокобезопасны.
+ */
+public final class StartupTrace {
+
+    /** Инициализация Firebase и настройка базы данных. */
+    public static final String STAGE_FIREBASE = "firebase";
+    /** Чтение сохранённой сессии пользователя. */
+    public static final String STAGE_AUTH = "auth_session";
+    /** Отложенная инициализация после первого кадра. */
+    public static final String STAGE_DEFERRED = "deferred";
+
+    /** Приложение создано. */
+    public static final String MARK_APPLICATION_CREATED = "application_created";
+    /** Первый показ списка чатов. */
+    public static final String MARK_CHAT_LIST_SHOWN = "chat_list_shown";
+
+    /**
+     * Источник времени, подменяется в тестах.
+     */
+    interface Clock {
+        long nanoTime();
+    }
+
+    private static final StartupTrace INSTANCE = new StartupTrace(System::nanoTime);
+
+    private final Clock clock;
+    private final long startNanos;
+    private final Map<String, Long> stageStarts = new LinkedHashMap<>();
+    private final Map<String, Long> stageDurations = new LinkedHashMap<>();
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+
+    StartupTrace(Clock clock) {
+        this.clock = clock;
+        this.startNanos = clock.nanoTime();
+    }
+
+    /** @return журнал текущего процесса, отсчёт идёт от первого обращения */
+    public static StartupTrace getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Отмечает начало этапа. Повторное начало уже завершённого этапа игнорируется.
+     *
+     * @param stage название этапа
+     */
+    public synchronized void begin(String stage) {
+        if (!stageDurations.containsKey(stage)) {
+            stageStarts.put(stage, clock.nanoTime());
+        }
+    }
+
+    /**
+     * Отмечает конец этапа и сохраняет его длительность.
+     *
+     * @param stage название этапа
+     */
+    public synchronized void end(String stage) {
+        Long start = stageStarts.remove(stage);
+        if (start != null) {
+            stageDurations.put(stage, toMillis(clock.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Отмечает событие запуска. Учитывается только первое наступление события.
+     *
+     * @param event название события
+     * @return true, если событие отмечено впервые
+     */
+    public synchronized boolean mark(String event) {
+        if (marks.containsKey(event)) {
+            return false;
+        }
+        marks.put(event, toMillis(clock.nanoTime() - startNanos));
+        return true;
+    }
+
+    /** @return длительности завершённых этапов в порядке их начала, мс */
+    public synchronized Map<String, Long> getStageDurations() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stageDurations));
+    }
+
+    /** @return время событий от начала запуска, мс */
+    public synchronized Map<String, Long> getMarks() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(marks));
+    }
+
+    /**
+     * @param event название события
+     * @return время события от начала запуска в мс или -1, если оно ещё не наступило
+     */
+    public synchronized long getMark(String event) {
+        Long time = marks.get(event);
+        return time != null ? time : -1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StartupTrace{stages=" + stageDurations + ", marks=" + marks + "}";
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.life.chat.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChatListIndexTest {
+
+    @Test
+    public void keepsRecencyOrderAndPositions() {
+        ChatListIndex index = new ChatListIndex();
+        index.put(new Chat("c1", "u1", "a", 10));
+        index.put(new Chat("c2", "u2", "b", 30));
+        index.put(new Chat("c3", "u3", "c", 20));
+
+        assertEquals("c2", index.toList().get(0).getId());
+        assertEquals("c1", index.toList().get(2).getId());
+
+        // Новое сообщение в самом старом чате переносит его в начало
+        assertEquals(0, index.put(new Chat("c1", "u1", "d", 40)));
+        assertEquals("c1", index.toList().get(0).getId());
+        assertEquals("c2", index.toList().get(1).getId());
+        assertEquals("c3", index.toList().get(2).getId());
+        assertEquals("d", index.findByOtherUser("u1").getLastMessage());
+        assertEquals("d", index.toUserMap().get("u1").getLastMessage());
+        // Следующий перенос правит позиции, сохранённые в индексе
+        assertEquals(0, index.put(new Chat("c3", "u3", "e", 50)));
+        assertEquals("c1", index.get("c1").getId());
+        assertEquals(1, index.put(new Chat("c1", "u1", "f", 45)));
+    }
+
+    @Test
+    public void removeReindexesTail() {
+        ChatListIndex index = new ChatListIndex();
+        index.put(new Chat("c1", "u1", "", 30));
+        index.put(new Chat("c2", "u2", "", 20));
+        index.put(new Chat("c3", "u3", "", 10));
+
+        assertTrue(index.remove("c1"));
+        assertFalse(index.remove("c1"));
+        assertEquals("c2", index.toList().get(0).getId());
+        // Позиции хвоста пересчитаны: повторная вставка заменяет чат, а не дублирует его
+        assertEquals(1, index.put(new Chat("c3", "u3", "", 10)));
+        assertNull(index.findByOtherUser("u1"));
+        assertFalse(index.toUserMap().containsKey("u1"));
+        assertEquals(2, index.size());
+    }
+}
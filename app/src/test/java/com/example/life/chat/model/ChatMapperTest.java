@@ -0,0 +1,72 @@
+package com.example.life.chat.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет формат сводок чатов user_chats и многопутевые обновления открытия чата.
+ */
+public class ChatMapperTest {
+
+    @Test
+    public void chatSummary_objectAndLegacyFormats() {
+        Map<String, Object> updates = new HashMap<>();
+        ChatMapper.putLastMessage(updates, "", "chat1", new Message("m", "последнее", "user1", 5L));
+        updates.put(ChatMapper.FIELD_UNREAD_COUNT, 3L);
+
+        Chat chat = ChatMapper.fromSummary("user2", updates);
+        assertEquals("chat1", chat.getId());
+        assertEquals("user2", chat.getOtherUserId());
+        assertEquals("последнее", chat.getLastMessage());
+        assertEquals(5L, chat.getLastMessageTimestamp());
+        assertEquals(3, chat.getUnreadCount());
+
+        Chat legacy = ChatMapper.fromSummary("user2", "chat1");
+        assertEquals("chat1", legacy.getId());
+        assertEquals("", legacy.getLastMessage());
+
+        assertNull(ChatMapper.fromSummary("user2", new HashMap<String, Object>()));
+        assertNull(ChatMapper.fromSummary(null, "chat1"));
+    }
+
+    @Test
+    public void chatOpen_sameIdFromBothSides() {
+        assertEquals(ChatMapper.chatIdFor("alice", "bob"), ChatMapper.chatIdFor("bob", "alice"));
+
+        Map<String, Object> updates = new HashMap<>();
+        String chatId = ChatMapper.putChatOpen(updates, "bob", "alice");
+        assertEquals("alice_bob", chatId);
+        assertEquals(true, updates.get("chats/alice_bob/participants/alice"));
+        assertEquals(true, updates.get("chats/alice_bob/participants/bob"));
+        assertEquals(chatId, updates.get("user_chats/alice/bob/chatId"));
+        assertEquals(chatId, updates.get("user_chats/bob/alice/chatId"));
+    }
+
+    @Test
+    public void readMarker_keepsUnreadCountOfNewerMessage() {
+        Map<String, Object> summary = new HashMap<>();
+        ChatMapper.putLastMessage(summary, "", "chat1", new Message("m2", "новое", "bob", 20L));
+        summary.put(ChatMapper.FIELD_UNREAD_COUNT, 2L);
+        summary.put(ChatMapper.FIELD_LAST_READ_TIMESTAMP, 5L);
+
+        // Пока отметка шла на сервер, пришло ещё одно сообщение
+        Map<?, ?> stale = (Map<?, ?>) ChatMapper.applyReadMarker(summary, "alice", 10L);
+        assertEquals(2L, stale.get(ChatMapper.FIELD_UNREAD_COUNT));
+        assertEquals(10L, stale.get(ChatMapper.FIELD_LAST_READ_TIMESTAMP));
+
+        Map<?, ?> read = (Map<?, ?>) ChatMapper.applyReadMarker(summary, "alice", 20L);
+        assertEquals(0, read.get(ChatMapper.FIELD_UNREAD_COUNT));
+        assertEquals("chat1", read.get(ChatMapper.FIELD_CHAT_ID));
+
+        // Последнее сообщение своё — всё входящее до него прочитано
+        ChatMapper.putLastMessage(summary, "", "chat1", new Message("m3", "ответ", "alice", 30L));
+        assertEquals(0, ((Map<?, ?>) ChatMapper.applyReadMarker(summary, "alice", 20L)).get(ChatMapper.FIELD_UNREAD_COUNT));
+
+        assertNull(ChatMapper.applyReadMarker(null, "alice", 20L));
+        assertEquals("chat1", ChatMapper.applyReadMarker("chat1", "alice", 20L));
+    }
+}
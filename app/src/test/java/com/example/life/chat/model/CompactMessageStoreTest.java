@@ -0,0 +1,121 @@
+package com.example.life.chat.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompactMessageStoreTest {
+
+    @Test
+    public void appendPrependAndSnapshot() {
+        CompactMessageStore store = new CompactMessageStore();
+        store.addAll(Arrays.asList(message("m3", "c", "u1", 3), message("m4", "d", "u2", 4)));
+        Message pending = message("m5", "e", "u1", 5);
+        pending.setPending(true);
+        store.add(pending);
+        store.addAllAtStart(Arrays.asList(message("m1", "a", "u2", 1), message("m2", "b", "u1", 2)));
+
+        CompactMessageList list = store.snapshot();
+        assertEquals(5, list.size());
+        assertEquals("m1", list.getId(0));
+        assertEquals("c", list.getText(2));
+        assertEquals("u2", list.getSenderId(3));
+        assertEquals(5, list.getTimestamp(4));
+        assertTrue(list.isPending(4));
+        assertFalse(list.isPending(2));
+        assertEquals(4, store.lastIndexOf("m5"));
+
+        // Снимок не меняется вместе с хранилищем
+        store.setPending(4, false);
+        store.set(0, message("m1", "changed", "u2", 1));
+        assertTrue(list.isPending(4));
+        assertEquals("a", list.getText(0));
+        assertEquals("changed", store.snapshot().getText(0));
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterWrites() {
+        CompactMessageStore store = new CompactMessageStore();
+        store.add(message("m0", "text0", "u1", 0));
+        store.add(message("m1", "text1", "u2", 1));
+        CompactMessageList list = store.snapshot();
+
+        Message pending = message("m2", "text2", "u1", 2);
+        pending.setPending(true);
+        store.add(pending);
+        store.spillTexts(2, 2);
+        store.remove(1);
+        store.addAllAtStart(Collections.singletonList(message("old", "a", "u2", -1)));
+
+        assertEquals(2, list.size());
+        assertEquals("m0", list.getId(0));
+        assertEquals("text0", list.getText(0));
+        assertEquals("m1", list.getId(1));
+        assertEquals("text1", list.getText(1));
+        assertFalse(list.isPending(1));
+
+        CompactMessageList current = store.snapshot();
+        assertEquals(3, current.size());
+        assertEquals("old", current.getId(0));
+        assertNull(current.getText(1));
+        assertEquals("m2", current.getId(2));
+        assertTrue(current.isPending(2));
+    }
+
+    @Test
+    public void spillAndRestoreTexts() {
+        CompactMessageStore store = new CompactMessageStore();
+        for (int i = 0; i < 10; i++) {
+            store.add(message("m" + i, "text" + i, "u1", i));
+        }
+        Message pending = message("m10", "text10", "u1", 10);
+        pending.setPending(true);
+        store.add(pending);
+        assertEquals(11, store.getResidentTextCount());
+
+        // Ожидающее отправки сообщение остаётся в памяти
+        assertEquals(7, store.spillTexts(4, 6));
+        assertEquals(4, store.getResidentTextCount());
+        assertNull(store.snapshot().getText(0));
+        assertEquals("text10", store.snapshot().getText(10));
+        assertEquals(Arrays.asList("m2", "m3"), store.getSpilledIds(2, 5));
+        assertEquals(Collections.emptyList(), store.getSpilledIds(4, 6));
+
+        Map<String, String> texts = new HashMap<>();
+        texts.put("m2", "text2");
+        texts.put("m3", "text3");
+        store.restoreTexts(texts);
+        assertEquals("text2", store.snapshot().getText(2));
+        assertEquals(6, store.getResidentTextCount());
+    }
+
+    @Test
+    public void messageWithoutTextIsNotSpilled() {
+        CompactMessageStore store = new CompactMessageStore();
+        store.add(message("m0", null, "u1", 0));
+        store.add(message("m1", "text1", "u1", 1));
+        store.add(message("m2", "text2", "u1", 2));
+
+        assertEquals(1, store.spillTexts(2, 2));
+        // Сообщение без текста не запрашивается с диска снова и снова
+        assertEquals(Collections.singletonList("m1"), store.getSpilledIds(0, 2));
+        store.restoreTexts(Collections.singletonMap("m1", "text1"));
+        assertEquals(Collections.emptyList(), store.getSpilledIds(0, 2));
+
+        // Биты выгруженных строк сдвигаются вместе со строками
+        store.spillTexts(2, 2);
+        store.addAllAtStart(Collections.singletonList(message("old", "a", "u2", -1)));
+        assertEquals(Collections.singletonList("m1"), store.getSpilledIds(0, 3));
+        store.remove(0);
+        assertEquals(Collections.singletonList("m1"), store.getSpilledIds(0, 2));
+    }
+
+    private static Message message(String id, String text, String senderId, long timestamp) {
+        return new Message(id, text, senderId, timestamp);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.life.chat.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет формат, в котором сообщения читаются из Firebase и пишутся в него.
+ */
+public class MessageMapperTest {
+
+    @Test
+    public void message_roundTrip() {
+        Message message = new Message("-Nabc", "Привет", "user1", 1700000000000L);
+        message.setPending(true);
+
+        Map<String, Object> fields = MessageMapper.toMap(message);
+        assertFalse(fields.containsKey("pending"));
+
+        Message restored = MessageMapper.fromMap("-Nabc", fields);
+        assertEquals("-Nabc", restored.getId());
+        assertEquals("Привет", restored.getText());
+        assertEquals("user1", restored.getSenderId());
+        assertEquals(1700000000000L, restored.getTimestamp());
+        assertFalse(restored.isPending());
+    }
+
+    @Test
+    public void message_missingFieldsAndNumberTypes() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("text", "t");
+        fields.put("timestamp", 12.0);
+
+        Message message = MessageMapper.fromMap("-Nkey", fields);
+        assertEquals("-Nkey", message.getId());
+        assertNull(message.getSenderId());
+        assertEquals(12L, message.getTimestamp());
+
+        assertNull(MessageMapper.fromMap("-Nkey", "not a message"));
+        assertNull(MessageMapper.fromMap("-Nkey", null));
+    }
+}
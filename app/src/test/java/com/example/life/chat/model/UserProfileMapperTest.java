@@ -0,0 +1,27 @@
+package com.example.life.chat.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверяет разбор профиля пользователя из Firebase.
+ */
+public class UserProfileMapperTest {
+
+    @Test
+    public void userProfile_displayNameFallbacks() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("email", "anna@example.com");
+        fields.put("uid", "u1");
+        assertEquals("anna", UserProfileMapper.fromMap("u1", fields, 0).getDisplayName());
+
+        fields.put("name", "Анна");
+        assertEquals("Анна", UserProfileMapper.fromMap("u1", fields, 0).getDisplayName());
+
+        assertEquals("u2", UserProfileMapper.fromMap("u2", null, 0).getDisplayName());
+    }
+}
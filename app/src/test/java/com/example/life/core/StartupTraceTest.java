@@ -0,0 +1,43 @@
+package com.example.life.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StartupTraceTest {
+
+    private long now = 0;
+
+    @Test
+    public void recordsStagesAndFirstMarks() {
+        StartupTrace trace = new StartupTrace(() -> now);
+
+        now = 2_000_000;
+        trace.begin(StartupTrace.STAGE_FIREBASE);
+        now = 7_000_000;
+        trace.end(StartupTrace.STAGE_FIREBASE);
+        assertEquals(Long.valueOf(5), trace.getStageDurations().get(StartupTrace.STAGE_FIREBASE));
+
+        assertEquals(-1, trace.getMark(StartupTrace.MARK_CHAT_LIST_SHOWN));
+        now = 40_000_000;
+        assertTrue(trace.mark(StartupTrace.MARK_CHAT_LIST_SHOWN));
+        now = 90_000_000;
+        assertFalse(trace.mark(StartupTrace.MARK_CHAT_LIST_SHOWN));
+        assertEquals(40, trace.getMark(StartupTrace.MARK_CHAT_LIST_SHOWN));
+    }
+
+    @Test
+    public void ignoresUnfinishedAndRepeatedStages() {
+        StartupTrace trace = new StartupTrace(() -> now);
+        trace.end(StartupTrace.STAGE_AUTH);
+        trace.begin(StartupTrace.STAGE_DEFERRED);
+        assertTrue(trace.getStageDurations().isEmpty());
+
+        now = 3_000_000;
+        trace.end(StartupTrace.STAGE_DEFERRED);
+        trace.begin(StartupTrace.STAGE_DEFERRED);
+        now = 10_000_000;
+        trace.end(StartupTrace.STAGE_DEFERRED);
+        assertEquals(Long.valueOf(3), trace.getStageDurations().get(StartupTrace.STAGE_DEFERRED));
+    }
+}
@@ -0,0 +1,29 @@
+// JVM-бенчмарки (JMH) для платформенно-независимого кода приложения.
+// Запуск: ./gradlew :benchmark:jmh, результаты в benchmark/build/results/jmh.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+// Модели чата не зависят от Android и Firebase, поэтому компилируются прямо из исходников app
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include("com/example/life/chat/model/**")
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,76 @@
+package com.example.life.chat.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновление строки списка чатов при новом сообщении: прежний вариант с линейным
+ * поиском и полной пересортировкой по времени против {@link ChatListIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChatListBenchmark {
+
+    @Param({"20", "500"})
+    public int chatCount;
+
+    private final List<Chat> chatList = new ArrayList<>();
+    private final ChatListIndex chatIndex = new ChatListIndex();
+    private long clock = 1_700_000_000_000L;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < chatCount; i++) {
+            Chat chat = new Chat("chat" + i, "user" + i, "Сообщение", clock++);
+            chatList.add(chat);
+            chatIndex.put(chat);
+        }
+    }
+
+    @Benchmark
+    public int updateLastMessage() {
+        String chatId = "chat" + (next++ % chatCount);
+        int position = -1;
+        for (int i = 0; i < chatList.size(); i++) {
+            if (chatList.get(i).getId().equals(chatId)) {
+                position = i;
+                break;
+            }
+        }
+        Chat current = chatList.get(position);
+        chatList.set(position, new Chat(chatId, current.getOtherUserId(), "Новое сообщение", clock++));
+        return position;
+    }
+
+    @Benchmark
+    public Chat updateLastMessageAndSort() {
+        updateLastMessage();
+        chatList.sort(Comparator.comparingLong(Chat::getLastMessageTimestamp).reversed());
+        return chatList.get(0);
+    }
+
+    @Benchmark
+    public int updateLastMessageIndexed() {
+        String chatId = "chat" + (next++ % chatCount);
+        Chat current = chatIndex.get(chatId);
+        return chatIndex.put(new Chat(chatId, current.getOtherUserId(), "Новое сообщение", clock++));
+    }
+
+    @Benchmark
+    public Chat findByOtherUserIndexed() {
+        return chatIndex.findByOtherUser("user" + (next++ % chatCount));
+    }
+}
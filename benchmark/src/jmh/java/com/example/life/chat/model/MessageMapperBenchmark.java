@@ -0,0 +1,79 @@
+package com.example.life.chat.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор и сериализация сообщений и сводок чатов в том виде, в каком их отдаёт
+ * DataSnapshot.getValue(): HashMap полей, целые числа приходят как Long.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageMapperBenchmark {
+
+    /** Размер начальной синхронизации чата. */
+    @Param({"50", "2000"})
+    public int messageCount;
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<Object> rawMessages = new ArrayList<>();
+    private final List<Message> messages = new ArrayList<>();
+    private final List<Object> rawSummaries = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < messageCount; i++) {
+            String key = String.format("-N%018d", i);
+            Map<String, Object> fields = new HashMap<>();
+            fields.put(MessageMapper.FIELD_ID, key);
+            fields.put(MessageMapper.FIELD_TEXT, "Сообщение номер " + i);
+            fields.put(MessageMapper.FIELD_SENDER_ID, i % 2 == 0 ? "user_a" : "user_b");
+            fields.put(MessageMapper.FIELD_TIMESTAMP, 1_700_000_000_000L + i);
+            keys.add(key);
+            rawMessages.add(fields);
+            messages.add(new Message(key, "Сообщение номер " + i, "user_a", 1_700_000_000_000L + i));
+
+            Map<String, Object> summary = new HashMap<>();
+            summary.put(ChatMapper.FIELD_CHAT_ID, "chat" + i);
+            summary.put(ChatMapper.FIELD_LAST_MESSAGE, "Сообщение номер " + i);
+            summary.put(ChatMapper.FIELD_LAST_MESSAGE_TIMESTAMP, 1_700_000_000_000L + i);
+            summary.put(ChatMapper.FIELD_UNREAD_COUNT, (long) (i % 5));
+            rawSummaries.add(summary);
+        }
+    }
+
+    @Benchmark
+    public void readMessages(Blackhole blackhole) {
+        for (int i = 0; i < messageCount; i++) {
+            blackhole.consume(MessageMapper.fromMap(keys.get(i), rawMessages.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void writeMessages(Blackhole blackhole) {
+        for (int i = 0; i < messageCount; i++) {
+            blackhole.consume(MessageMapper.toMap(messages.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void readChatSummaries(Blackhole blackhole) {
+        for (int i = 0; i < messageCount; i++) {
+            blackhole.consume(ChatMapper.fromSummary(keys.get(i), rawSummaries.get(i)));
+        }
+    }
+}
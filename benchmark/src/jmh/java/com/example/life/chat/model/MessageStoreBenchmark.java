@@ -0,0 +1,54 @@
+package com.example.life.chat.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикация списка сообщений большого чата после нового сообщения: прежняя копия
+ * ArrayList объектов {@link Message} против снимка {@link CompactMessageStore},
+ * который ссылается на массивы хранилища без копирования.
+ * Выделяемую память показывает запуск с профайлером: -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageStoreBenchmark {
+
+    @Param({"1000", "100000"})
+    public int messageCount;
+
+    private final List<Message> messageList = new ArrayList<>();
+    private final CompactMessageStore messageStore = new CompactMessageStore();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < messageCount; i++) {
+            // Разобранные из Firebase строки отправителя — отдельный объект в каждом сообщении
+            Message message = new Message(String.format("-N%018d", i), "Сообщение номер " + i,
+                    new String(i % 2 == 0 ? "user_a" : "user_b"), 1_700_000_000_000L + i);
+            messageList.add(message);
+            messageStore.add(message);
+        }
+    }
+
+    @Benchmark
+    public List<Message> publishArrayListCopy() {
+        return Collections.unmodifiableList(new ArrayList<>(messageList));
+    }
+
+    @Benchmark
+    public CompactMessageList publishCompactSnapshot() {
+        return messageStore.snapshot();
+    }
+}
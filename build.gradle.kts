@@ -1,5 +1,6 @@
 // Top-level build file where you can add configuration options common to all sub-projects/modules.
 plugins {
     alias(libs.plugins.android.application) apply false
+    alias(libs.plugins.jmh) apply false
     id("com.google.gms.google-services") version "4.4.1" apply false
 }
\ No newline at end of file
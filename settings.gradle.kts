@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "life"
 include(":app")
+include(":benchmark")